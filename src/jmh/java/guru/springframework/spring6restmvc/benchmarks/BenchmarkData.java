@@ -0,0 +1,56 @@
+package guru.springframework.spring6restmvc.benchmarks;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.Customer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+final class BenchmarkData {
+
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+
+    private BenchmarkData() {
+    }
+
+    static Beer beer(int i) {
+        Beer beer = Beer.builder()
+                .beerName("Beer " + i)
+                .beerStyle(STYLES[i % STYLES.length])
+                .upc("0631234" + i)
+                .quantityOnHand(i % 500)
+                .price(new BigDecimal("9.99"))
+                .build();
+        beer.setId(UUID.randomUUID());
+        beer.setVersion(i % 5);
+        beer.setCreatedDate(LocalDateTime.now());
+        beer.setUpdateDate(LocalDateTime.now());
+        return beer;
+    }
+
+    static BeerDTO beerDto(int i) {
+        Beer beer = beer(i);
+        return new BeerDTO(beer.getId(), beer.getVersion(), beer.getCreatedDate(), beer.getUpdateDate(),
+                beer.getBeerName(), beer.getBeerStyle(), beer.getUpc(), beer.getQuantityOnHand(), beer.getPrice());
+    }
+
+    static List<BeerDTO> beerDtos(int count) {
+        return IntStream.range(0, count).mapToObj(BenchmarkData::beerDto).toList();
+    }
+
+    static Customer customer(int i) {
+        Customer customer = Customer.builder()
+                .name("Customer " + i)
+                .build();
+        customer.setId(UUID.randomUUID());
+        customer.setVersion(i % 5);
+        customer.setCreatedDate(LocalDateTime.now());
+        customer.setUpdateDate(LocalDateTime.now());
+        return customer;
+    }
+}
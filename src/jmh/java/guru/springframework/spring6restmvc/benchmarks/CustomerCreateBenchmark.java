@@ -0,0 +1,54 @@
+package guru.springframework.spring6restmvc.benchmarks;
+
+import guru.springframework.spring6restmvc.Spring6RestMvcApplication;
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.services.CustomerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of concurrent {@link CustomerService#saveNewCustomer} calls, each committed on its own or through
+ * group commit. Needs a real PostgreSQL, since the cost being saved is the commit; the test profile's
+ * Testcontainers database is used unless another is given, e.g.
+ * {@code -jvmArgsAppend -Dspring.datasource.url=jdbc:postgresql://localhost:5432/postgres}. The schema is
+ * created on startup and dropped afterwards.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class CustomerCreateBenchmark {
+
+    @Param({"false", "true"})
+    private boolean groupCommit;
+
+    private ConfigurableApplicationContext context;
+    private CustomerService customerService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("customer.group-commit.enabled=" + groupCommit, "spring.jpa.show-sql=false")
+                .run();
+        customerService = context.getBean(CustomerService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public CustomerDTO create() {
+        return customerService.saveNewCustomer(CustomerDTO.builder().name("Load Test").build());
+    }
+}
@@ -0,0 +1,79 @@
+package guru.springframework.spring6restmvc.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import guru.springframework.spring6restmvc.config.BinaryFormatsConfig;
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.DtoSerializers;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Writing and reading beer lists through the application's message converters, one per negotiable format. The
+ * encoded size of each list is printed during setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatsBenchmark {
+
+    private static final Type BEER_LIST = new TypeReference<List<BeerDTO>>() {
+    }.getType();
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    private String format;
+
+    @Param({"1", "100"})
+    private int size;
+
+    private GenericHttpMessageConverter<Object> converter;
+    private MediaType mediaType;
+    private List<BeerDTO> beers;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        // configured like the application's ObjectMapper
+        Supplier<Jackson2ObjectMapperBuilder> builders = () -> Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .modulesToInstall(new BlackbirdModule())
+                .serializers(new DtoSerializers.BeerDTOSerializer(), new DtoSerializers.CustomerDTOSerializer());
+        List<GenericHttpMessageConverter<Object>> converters = new ArrayList<>();
+        converters.add(new MappingJackson2HttpMessageConverter(builders.get().build()));
+        converters.addAll(BinaryFormatsConfig.binaryConverters(builders));
+        converter = converters.get(List.of("json", "cbor", "smile", "protobuf").indexOf(format));
+        mediaType = converter.getSupportedMediaTypes().get(0);
+        beers = BenchmarkData.beerDtos(size);
+        encoded = serialize();
+        System.out.printf("%n%s, %d beers: %d bytes, %d per beer%n", format, size, encoded.length,
+                encoded.length / size);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(beers, BEER_LIST, mediaType, output);
+        return output.getBodyAsBytes();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        return converter.read(BEER_LIST, null, new MockHttpInputMessage(encoded));
+    }
+}
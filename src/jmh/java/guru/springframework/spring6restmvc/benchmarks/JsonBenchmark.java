@@ -0,0 +1,71 @@
+package guru.springframework.spring6restmvc.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.DtoSerializers;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization and deserialization of beer lists, sized like an empty, default and maximum page, and
+ * like a 10k element export. {@code bean} is plain Jackson, {@code application} adds the Blackbird module and
+ * the hand-written DTO serializers the application registers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    @Param({"1", "25", "100", "10000"})
+    private int size;
+
+    @Param({"bean", "blackbird", "application"})
+    private String serializers;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<BeerDTO> beers;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        // same defaults Spring Boot applies to the application's ObjectMapper
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (!serializers.equals("bean")) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        if (serializers.equals("application")) {
+            builder.serializers(new DtoSerializers.BeerDTOSerializer(), new DtoSerializers.CustomerDTOSerializer());
+        }
+        ObjectMapper objectMapper = builder.build();
+        TypeReference<List<BeerDTO>> type = new TypeReference<>() {
+        };
+        writer = objectMapper.writerFor(type);
+        reader = objectMapper.readerFor(type);
+        beers = BenchmarkData.beerDtos(size);
+        json = writer.writeValueAsBytes(beers);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(beers);
+    }
+
+    @Benchmark
+    public List<BeerDTO> deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
@@ -0,0 +1,59 @@
+package guru.springframework.spring6restmvc.benchmarks;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerFilter;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.services.BeerService;
+import guru.springframework.spring6restmvc.services.BeerServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BeerServiceImpl#listBeers} against an in-memory repository, so the numbers cover the service's own
+ * paging and token work rather than the database. The stub ignores the filter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListBeersBenchmark {
+
+    @Param({"25", "100"})
+    private int pageSize;
+
+    private BeerService beerService;
+    private BeerFilter filter;
+    private String pageToken;
+
+    @Setup
+    public void setUp() {
+        List<BeerDTO> beers = BenchmarkData.beerDtos(1000);
+        BeerRepository repository = (BeerRepository) Proxy.newProxyInstance(BeerRepository.class.getClassLoader(),
+                new Class<?>[]{BeerRepository.class},
+                (proxy, method, args) -> {
+                    if(method.getName().equals("findAllDtos")) {
+                        return beers.subList(0, Math.min((int) args[2], beers.size()));
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        beerService = new BeerServiceImpl(repository, null, null, null);
+        filter = BeerFilter.builder().beerName("Beer").build();
+        pageToken = beerService.listBeers(filter, null, pageSize).getNextPageToken();
+    }
+
+    @Benchmark
+    public KeysetPage<BeerDTO> firstPage() {
+        return beerService.listBeers(filter, null, pageSize);
+    }
+
+    @Benchmark
+    public KeysetPage<BeerDTO> nextPage() {
+        return beerService.listBeers(filter, pageToken, pageSize);
+    }
+}
@@ -0,0 +1,70 @@
+package guru.springframework.spring6restmvc.benchmarks;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.mappers.BeerMapper;
+import guru.springframework.spring6restmvc.mappers.CustomerMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of copying a single row through the MapStruct mappers and their decorators. modelToDto is the
+ * per-row work the read paths avoid by projecting straight into DTOs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    private AnnotationConfigApplicationContext context;
+    private BeerMapper beerMapper;
+    private CustomerMapper customerMapper;
+    private Beer beer;
+    private BeerDTO beerDto;
+    private Customer customer;
+    private CustomerDTO customerDto;
+
+    @Setup
+    public void setUp() {
+        // the decorators need their delegates injected, so let Spring wire the generated mappers
+        context = new AnnotationConfigApplicationContext("guru.springframework.spring6restmvc.mappers");
+        beerMapper = context.getBean(BeerMapper.class);
+        customerMapper = context.getBean(CustomerMapper.class);
+        beer = BenchmarkData.beer(1);
+        beerDto = beerMapper.modelToDto(beer);
+        customer = BenchmarkData.customer(1);
+        customerDto = customerMapper.modelToDto(customer);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BeerDTO beerModelToDto() {
+        return beerMapper.modelToDto(beer);
+    }
+
+    @Benchmark
+    public Beer beerDtoToModel() {
+        return beerMapper.dtoToModel(beerDto);
+    }
+
+    @Benchmark
+    public CustomerDTO customerModelToDto() {
+        return customerMapper.modelToDto(customer);
+    }
+
+    @Benchmark
+    public Customer customerDtoToModel() {
+        return customerMapper.dtoToModel(customerDto);
+    }
+}
@@ -8,11 +8,14 @@ import guru.springframework.spring6restmvc.repositories.CustomerRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @Component
+@Profile("!seed")
 @RequiredArgsConstructor
 @Slf4j
 public class BootstrapData implements CommandLineRunner {
@@ -28,33 +31,30 @@ public class BootstrapData implements CommandLineRunner {
         innisAndGunn.setBeerStyle(BeerStyle.LAGER);
         innisAndGunn.setUpc("upc innis");
         innisAndGunn.setPrice(BigDecimal.valueOf(4.5));
-        beerRepository.save(innisAndGunn);
 
         Beer tennents = new Beer();
         tennents.setBeerName("InnisAndGunn");
         tennents.setBeerStyle(BeerStyle.LAGER);
         tennents.setUpc("tenUPC");
         tennents.setPrice(BigDecimal.valueOf(4.1));
-        beerRepository.save(tennents);
-
-        Customer customer1 = new Customer();
-        customer1.setName("Jack Reacher");
-        customerRepository.save(customer1);
 
         Beer guinness = new Beer();
         guinness.setBeerName("Guinness");
         guinness.setBeerStyle(BeerStyle.STOUT);
         guinness.setUpc("guin_upc");
         guinness.setPrice(BigDecimal.valueOf(5.1));
-        beerRepository.save(guinness);
+
+        Customer customer1 = new Customer();
+        customer1.setName("Jack Reacher");
 
         Customer rebusCustomer = new Customer();
         rebusCustomer.setName("Rebus");
 
-        customerRepository.save(rebusCustomer);
+        List<Beer> beers = beerRepository.saveAll(List.of(innisAndGunn, tennents, guinness));
+        List<Customer> customers = customerRepository.saveAll(List.of(customer1, rebusCustomer));
 
-        log.info("beer count: {}", beerRepository.count());
-        log.info("customer count: {}", customerRepository.count());
+        log.info("beer count: {}", beers.size());
+        log.info("customer count: {}", customers.size());
 
     }
 }
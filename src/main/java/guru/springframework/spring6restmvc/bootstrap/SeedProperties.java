@@ -0,0 +1,21 @@
+package guru.springframework.spring6restmvc.bootstrap;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the {@code seed} profile, e.g. {@code --seed.beers=5000000 --seed.threads=8}.
+ *
+ * @param beers      number of beers to generate
+ * @param customers  number of customers to generate
+ * @param threads    number of producer threads, each writing on its own connection
+ * @param chunkSize  rows per COPY or JDBC batch, and per transaction
+ * @param randomSeed seed for the generator; the same seed always produces the same rows
+ */
+@ConfigurationProperties(prefix = "seed")
+public record SeedProperties(@DefaultValue("1000000") int beers,
+                             @DefaultValue("100000") int customers,
+                             @DefaultValue("4") int threads,
+                             @DefaultValue("10000") int chunkSize,
+                             @DefaultValue("42") long randomSeed) {
+}
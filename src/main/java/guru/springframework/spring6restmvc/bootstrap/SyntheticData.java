@@ -0,0 +1,88 @@
+package guru.springframework.spring6restmvc.bootstrap;
+
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.entities.ModelBase;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Deterministic generator for synthetic beers and customers. Every row is derived from the seed and its index
+ * alone, so rows can be produced in any order, by any number of threads, and still come out the same.
+ */
+class SyntheticData {
+
+    private static final String[] ADJECTIVES = {"Hazy", "Hoppy", "Dark", "Golden", "Amber", "Smoky", "Crisp",
+            "Wild", "Bitter", "Old", "Red", "Misty"};
+    private static final String[] NOUNS = {"Badger", "Otter", "Harbour", "Thistle", "Anchor", "Lantern", "Fox",
+            "Raven", "Meadow", "Bothy", "Stag", "Kelpie"};
+    private static final String[] FIRST_NAMES = {"Jack", "John", "Siobhan", "Gill", "Brian", "Mairie", "Morris",
+            "Ellen", "Ray", "Christine"};
+    private static final String[] LAST_NAMES = {"Reacher", "Rebus", "Clarke", "Templer", "Holmes", "Cafferty",
+            "Wylie", "Grogan", "Macrae", "Laidlaw"};
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final long FOUR_YEARS_IN_SECONDS = 4L * 365 * 24 * 60 * 60;
+    private static final long THIRTY_DAYS_IN_SECONDS = 30L * 24 * 60 * 60;
+    private static final long TWELVE_DIGITS = 1_000_000_000_000L;
+
+    private final long seed;
+
+    SyntheticData(long seed) {
+        this.seed = seed;
+    }
+
+    Beer beer(long index) {
+        SplittableRandom random = random(index);
+        Beer beer = Beer.builder()
+                .beerName(pick(random, ADJECTIVES) + " " + pick(random, NOUNS))
+                .beerStyle(STYLES[random.nextInt(STYLES.length)])
+                // prefixing a 1 and dropping it again zero-pads the UPC to twelve digits
+                .upc(Long.toString(TWELVE_DIGITS + random.nextLong(TWELVE_DIGITS)).substring(1))
+                .quantityOnHand(random.nextInt(500))
+                .price(BigDecimal.valueOf(random.nextInt(199, 2000), 2))
+                .build();
+        populateBase(beer, random);
+        return beer;
+    }
+
+    Customer customer(long index) {
+        SplittableRandom random = random(index);
+        Customer customer = Customer.builder()
+                .name(pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES))
+                .build();
+        populateBase(customer, random);
+        return customer;
+    }
+
+    private SplittableRandom random(long index) {
+        // SplittableRandom mixes its seed, so neighbouring indexes still give unrelated sequences
+        return new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+    }
+
+    private static void populateBase(ModelBase model, SplittableRandom random) {
+        model.setId(randomUuid(random));
+        model.setVersion(0);
+        LocalDateTime createdDate = EPOCH.plusSeconds(random.nextLong(FOUR_YEARS_IN_SECONDS));
+        model.setCreatedDate(createdDate);
+        model.setUpdateDate(createdDate.plusSeconds(random.nextLong(THIRTY_DAYS_IN_SECONDS)));
+    }
+
+    /**
+     * A version 4 UUID built from the generator rather than {@link UUID#randomUUID()}, which would make the ids
+     * differ between runs.
+     */
+    private static UUID randomUuid(SplittableRandom random) {
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,146 @@
+package guru.springframework.spring6restmvc.bootstrap;
+
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.Customer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+/**
+ * Fills the database with generated beers and customers for load tests and benchmarks. Enabled by the
+ * {@code seed} profile in place of {@link BootstrapData} and sized by {@link SeedProperties}.
+ * <p>
+ * Rows are written in chunks by parallel producer threads. On PostgreSQL each chunk is streamed with
+ * {@code COPY ... FROM STDIN}; other databases fall back to batched INSERTs. Throughput is logged per table.
+ */
+@Slf4j
+@Component
+@Profile("seed")
+@RequiredArgsConstructor
+@EnableConfigurationProperties(SeedProperties.class)
+public class SyntheticDataSeeder implements CommandLineRunner {
+
+    private static final String BEER_COLUMNS =
+            "id, version, created_date, update_date, beer_name, beer_style, upc, quantity_on_hand, price";
+    private static final String CUSTOMER_COLUMNS = "id, version, created_date, update_date, name";
+
+    private final DataSource dataSource;
+    private final SeedProperties properties;
+
+    @Override
+    public void run(String... args) throws Exception {
+        SyntheticData data = new SyntheticData(properties.randomSeed());
+        seed("beer", BEER_COLUMNS, properties.beers(), index -> beerRow(data.beer(index)));
+        seed("customer", CUSTOMER_COLUMNS, properties.customers(), index -> customerRow(data.customer(index)));
+    }
+
+    private void seed(String table, String columns, long rows, LongFunction<Object[]> generator) throws Exception {
+        long start = System.nanoTime();
+        ExecutorService producers = Executors.newFixedThreadPool(properties.threads());
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (long from = 0; from < rows; from += properties.chunkSize()) {
+                long first = from;
+                long last = Math.min(from + properties.chunkSize(), rows);
+                chunks.add(producers.submit(() -> {
+                    writeChunk(table, columns, first, last, generator);
+                    return null;
+                }));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            producers.shutdownNow();
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("seeded {} {} rows in {} ms ({} rows/s)", rows, table, millis, rows * 1000 / millis);
+    }
+
+    private void writeChunk(String table, String columns, long first, long last,
+                            LongFunction<Object[]> generator) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            if (connection.isWrapperFor(PGConnection.class)) {
+                copy(connection.unwrap(PGConnection.class), table, columns, first, last, generator);
+            } else {
+                insert(connection, table, columns, first, last, generator);
+            }
+            connection.commit();
+        }
+    }
+
+    private void copy(PGConnection connection, String table, String columns, long first, long last,
+                      LongFunction<Object[]> generator) throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (long index = first; index < last; index++) {
+            appendCsv(csv, generator.apply(index));
+        }
+        connection.getCopyAPI().copyIn("COPY " + table + " (" + columns + ") FROM STDIN WITH (FORMAT csv)",
+                new StringReader(csv.toString()));
+    }
+
+    private void insert(Connection connection, String table, String columns, long first, long last,
+                        LongFunction<Object[]> generator) throws SQLException {
+        int columnCount = columns.split(",").length;
+        String placeholders = String.join(", ", Collections.nCopies(columnCount, "?"));
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")")) {
+            for (long index = first; index < last; index++) {
+                Object[] row = generator.apply(index);
+                for (int column = 0; column < row.length; column++) {
+                    statement.setObject(column + 1, row[column]);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static void appendCsv(StringBuilder csv, Object[] row) {
+        for (int column = 0; column < row.length; column++) {
+            if (column > 0) {
+                csv.append(',');
+            }
+            Object value = row[column];
+            if (value instanceof String text) {
+                csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else if (value != null) {
+                csv.append(value);
+            }
+        }
+        csv.append('\n');
+    }
+
+    private static Object[] beerRow(Beer beer) {
+        // beer_style is mapped by ordinal
+        return new Object[]{beer.getId(), beer.getVersion(), beer.getCreatedDate(), beer.getUpdateDate(),
+                beer.getBeerName(), beer.getBeerStyle().ordinal(), beer.getUpc(), beer.getQuantityOnHand(),
+                beer.getPrice()};
+    }
+
+    private static Object[] customerRow(Customer customer) {
+        return new Object[]{customer.getId(), customer.getVersion(), customer.getCreatedDate(),
+                customer.getUpdateDate(), customer.getName()};
+    }
+}
@@ -0,0 +1,48 @@
+package guru.springframework.spring6restmvc.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Lets internal callers exchange beers and customers as CBOR ({@code application/cbor}), Smile
+ * ({@code application/x-jackson-smile}) or Protobuf ({@code application/x-protobuf}) instead of JSON.
+ * <p>
+ * The binary converters go after the JSON one, so JSON is still chosen for clients that accept anything. CBOR
+ * and Smile use the application's Jackson configuration, replacing the converters Spring MVC adds by default.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class BinaryFormatsConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilders;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.addAll(binaryConverters(objectMapperBuilders::getObject));
+    }
+
+    /**
+     * The CBOR, Smile and Protobuf converters, each CBOR and Smile mapper built from a fresh builder.
+     */
+    public static List<GenericHttpMessageConverter<Object>> binaryConverters(
+            Supplier<Jackson2ObjectMapperBuilder> builders) {
+        return List.of(
+                new MappingJackson2CborHttpMessageConverter(builders.get().factory(new CBORFactory()).build()),
+                new MappingJackson2SmileHttpMessageConverter(builders.get().factory(new SmileFactory()).build()),
+                new DtoProtobufHttpMessageConverter());
+    }
+}
@@ -0,0 +1,17 @@
+package guru.springframework.spring6restmvc.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Caching advice is ordered outside the transaction advice, so evictions happen after commit and
+ * cache hits don't open a transaction. Cache sizes and expiry are set by spring.cache.caffeine.spec.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CachingConfig {
+
+    public static final String BEER_CACHE = "beers";
+    public static final String CUSTOMER_CACHE = "customers";
+}
@@ -0,0 +1,157 @@
+package guru.springframework.spring6restmvc.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads and writes beers and customers, and lists of them, as the Protobuf messages in
+ * {@code proto/spring6restmvc.proto}. Lists are wrapped in a message with one repeated field, since a Protobuf
+ * message can't be a bare list. Any other type is left to the other converters.
+ */
+public class DtoProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private static final String SCHEMA_LOCATION = "/proto/spring6restmvc.proto";
+
+    private record Message(ProtobufSchema schema, String listField) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Message beer;
+    private final Message beerList;
+    private final Message customer;
+    private final Message customerList;
+
+    public DtoProtobufHttpMessageConverter() {
+        super(APPLICATION_PROTOBUF);
+        // ids and prices are strings in the schema; Jackson would write ids as raw bytes, and Protobuf has no
+        // decimal type that would keep a price's scale
+        this.objectMapper = Jackson2ObjectMapperBuilder.json()
+                .factory(new ProtobufFactory())
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .serializerByType(UUID.class, ToStringSerializer.instance)
+                .serializerByType(BigDecimal.class, ToStringSerializer.instance)
+                .modulesToInstall(new BlackbirdModule())
+                .build();
+        try (InputStream proto = getClass().getResourceAsStream(SCHEMA_LOCATION)) {
+            NativeProtobufSchema schema = ProtobufSchemaLoader.std.loadNative(proto, true);
+            this.beer = new Message(schema.forType("Beer"), null);
+            this.beerList = new Message(schema.forType("BeerList"), "beers");
+            this.customer = new Message(schema.forType("Customer"), null);
+            this.customerList = new Message(schema.forType("CustomerList"), "customers");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load " + SCHEMA_LOCATION, e);
+        }
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return messageFor(objectMapper.constructType(clazz)) != null;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return messageFor(javaType(type, contextClass)) != null && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return messageFor(javaType(type != null ? type : clazz, null)) != null && canWrite(mediaType);
+    }
+
+    /**
+     * Only asked once {@link #canWrite(Type, Class, MediaType)} has accepted the declared type, which for a list is
+     * the only place its element type can be seen.
+     */
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return getSupportedMediaTypes();
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        JavaType javaType = javaType(type, contextClass);
+        Message message = messageFor(javaType);
+        byte[] body = inputMessage.getBody().readAllBytes();
+        try {
+            if(message.listField() == null) {
+                // a message with no fields set is encoded as no bytes at all
+                return body.length == 0
+                        ? objectMapper.convertValue(Map.of(), javaType)
+                        : objectMapper.readerFor(javaType).with(message.schema()).readValue(body);
+            }
+            JavaType wrapperType = objectMapper.getTypeFactory()
+                    .constructMapType(Map.class, objectMapper.constructType(String.class), javaType);
+            Map<String, Object> wrapper = body.length == 0
+                    ? Map.of()
+                    : objectMapper.readerFor(wrapperType).with(message.schema()).readValue(body);
+            Object list = wrapper.get(message.listField());
+            return list != null ? list : new ArrayList<>();
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Invalid Protobuf message: " + e.getOriginalMessage(), e,
+                    inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Message message = messageFor(javaType(type != null ? type : object.getClass(), null));
+        Object value = message.listField() == null ? object : Map.of(message.listField(), object);
+        try {
+            objectMapper.writer(message.schema()).writeValue(StreamUtils.nonClosing(outputMessage.getBody()), value);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write Protobuf message: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private JavaType javaType(Type type, Class<?> contextClass) {
+        return objectMapper.constructType(GenericTypeResolver.resolveType(type, contextClass));
+    }
+
+    private Message messageFor(JavaType javaType) {
+        boolean list = javaType.isCollectionLikeType();
+        Class<?> element = list ? javaType.getContentType().getRawClass() : javaType.getRawClass();
+        if(element == BeerDTO.class) {
+            return list ? beerList : beer;
+        }
+        if(element == CustomerDTO.class) {
+            return list ? customerList : customer;
+        }
+        return null;
+    }
+}
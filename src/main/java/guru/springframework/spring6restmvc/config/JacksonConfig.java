@@ -0,0 +1,18 @@
+package guru.springframework.spring6restmvc.config;
+
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring Boot registers every Module bean with the application's ObjectMapper. Blackbird replaces the reflective
+ * getter and setter calls of bean (de)serialization with generated lambdas.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -0,0 +1,189 @@
+package guru.springframework.spring6restmvc.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the primary and replica connection pools, and hands out replica connections to read-only transactions
+ * through {@link #getReadOnlyDataSource()}.
+ * <p>
+ * Each replica's lag is checked every {@code replicas.lag-check-interval}, on a thread of its own so that a
+ * replica that is down can't hold up startup or the application's scheduled tasks. Only replicas within
+ * {@code replicas.max-lag} of the primary are used, and a replica that fails to hand out a connection within
+ * {@code replicas.connection-timeout} is skipped until its next check. With no replica in sync, including
+ * until the first check has finished, read-only transactions go to the primary.
+ */
+@Slf4j
+public class ReadReplicaRouter implements Closeable {
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        private volatile boolean inSync = true;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        private int activeConnections() {
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            return bean == null ? 0 : bean.getActiveConnections();
+        }
+    }
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReplicaProperties.Selection selection;
+    private final Duration maxLag;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-lag-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final DataSource readOnlyDataSource = new AbstractDataSource() {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return readOnlyConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            // pools are per user, so only the primary can serve other credentials
+            return primary.getConnection(username, password);
+        }
+    };
+
+    /**
+     * Replicas found in sync by the last check, in the order they are configured.
+     */
+    private volatile List<Replica> available = List.of();
+
+    public ReadReplicaRouter(HikariDataSource primary, ReplicaProperties properties, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.selection = properties.selection();
+        this.maxLag = properties.maxLag();
+        this.lagQuery = properties.lagQuery();
+        for (ReplicaProperties.Pool pool : properties.pools()) {
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setPoolName("replica-" + (replicas.size() + 1));
+            config.setJdbcUrl(pool.url());
+            if(pool.username() != null) {
+                config.setUsername(pool.username());
+            }
+            if(pool.password() != null) {
+                config.setPassword(pool.password());
+            }
+            if(pool.driverClassName() != null) {
+                config.setDriverClassName(pool.driverClassName());
+            }
+            // a replica that is down at startup is skipped rather than failing the application
+            config.setInitializationFailTimeout(-1);
+            config.setConnectionTimeout(properties.connectionTimeout().toMillis());
+            if(meterRegistry != null) {
+                config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            }
+            replicas.add(new Replica(new HikariDataSource(config)));
+        }
+        lagChecker.scheduleWithFixedDelay(this::checkLag, 0, properties.lagCheckInterval().toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public DataSource getReadOnlyDataSource() {
+        return readOnlyDataSource;
+    }
+
+    public void checkLag() {
+        List<Replica> inSync = new ArrayList<>();
+        for (Replica replica : replicas) {
+            boolean wasInSync = replica.inSync;
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet lag = statement.executeQuery(lagQuery)) {
+                lag.next();
+                Duration behind = Duration.ofMillis(Math.round(lag.getDouble(1) * 1000));
+                replica.inSync = behind.compareTo(maxLag) <= 0;
+                if(wasInSync && !replica.inSync) {
+                    log.warn("Replica {} is {} behind the primary, reading from the others until it catches up",
+                            replica.pool.getPoolName(), behind);
+                }
+            } catch (SQLException | RuntimeException e) {
+                // anything escaping would cancel the later checks
+                replica.inSync = false;
+                if(wasInSync) {
+                    log.warn("Replica {} is unavailable: {}", replica.pool.getPoolName(), e.getMessage());
+                }
+            }
+            if(replica.inSync) {
+                if(!wasInSync) {
+                    log.info("Replica {} is back in sync", replica.pool.getPoolName());
+                }
+                inSync.add(replica);
+            }
+        }
+        available = List.copyOf(inSync);
+    }
+
+    @Override
+    public void close() {
+        lagChecker.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+        primary.close();
+    }
+
+    private Connection readOnlyConnection() throws SQLException {
+        for (Replica replica : candidates()) {
+            try {
+                return replica.pool.getConnection();
+            } catch (SQLException e) {
+                log.warn("Replica {} is unavailable: {}", replica.pool.getPoolName(), e.getMessage());
+                replica.inSync = false;
+                available = available.stream().filter(candidate -> candidate != replica).toList();
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * The replicas to try, best first.
+     */
+    private List<Replica> candidates() {
+        List<Replica> candidates = available;
+        if(candidates.size() < 2) {
+            return candidates;
+        }
+        if(selection == ReplicaProperties.Selection.LEAST_CONNECTIONS) {
+            return candidates.stream().sorted(Comparator.comparingInt(Replica::activeConnections)).toList();
+        }
+        int first = Math.floorMod(next.getAndIncrement(), candidates.size());
+        List<Replica> ordered = new ArrayList<>(candidates.subList(first, candidates.size()));
+        ordered.addAll(candidates.subList(0, first));
+        return ordered;
+    }
+}
@@ -0,0 +1,48 @@
+package guru.springframework.spring6restmvc.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read replicas for {@code @Transactional(readOnly = true)} work, e.g.
+ * {@code --replicas.pools[0].url=jdbc:postgresql://replica1/beers --replicas.selection=least-connections}.
+ * Replica pools take the primary's {@code spring.datasource} and {@code spring.datasource.hikari} settings
+ * unless overridden here.
+ *
+ * @param pools             the replicas; none means every query goes to the primary
+ * @param selection         how a read-only transaction picks among the replicas that are in sync
+ * @param maxLag            replicas further behind the primary than this are skipped until they catch up
+ * @param lagQuery          returns how far a replica is behind, in seconds; the default is for PostgreSQL
+ *                          streaming replicas and reports 0 on a server that isn't in recovery
+ * @param lagCheckInterval  the delay between lag checks
+ * @param connectionTimeout how long a replica may take to hand out a connection before it is skipped; kept
+ *                          short, since a read-only transaction waits this long before falling back
+ */
+@ConfigurationProperties(prefix = "replicas")
+public record ReplicaProperties(@DefaultValue List<Pool> pools,
+                                @DefaultValue("round-robin") Selection selection,
+                                @DefaultValue("PT5S") Duration maxLag,
+                                @DefaultValue(DEFAULT_LAG_QUERY) String lagQuery,
+                                @DefaultValue("PT1S") Duration lagCheckInterval,
+                                @DefaultValue("PT2S") Duration connectionTimeout) {
+
+    public static final String DEFAULT_LAG_QUERY = "select case when not pg_is_in_recovery()"
+            + " or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0"
+            + " else extract(epoch from now() - pg_last_xact_replay_timestamp()) end";
+
+    /**
+     * @param url             JDBC url of the replica
+     * @param username        defaults to the primary's
+     * @param password        defaults to the primary's
+     * @param driverClassName defaults to the primary's
+     */
+    public record Pool(String url, String username, String password, String driverClassName) {
+    }
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_CONNECTIONS
+    }
+}
@@ -0,0 +1,49 @@
+package guru.springframework.spring6restmvc.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Sends read-only transactions to the replicas in {@link ReplicaProperties}, and everything else to the primary.
+ * Only active when at least one replica is configured; otherwise Spring Boot's own DataSource is used.
+ * <p>
+ * The connection is taken lazily, on the first statement, because the transaction's read-only flag is set
+ * after it begins. Read-only methods called from a read-write transaction join it and stay on the primary, so
+ * they see its writes. Reads whose results are kept, such as cache loads, run in read-write transactions so
+ * that they come from the primary too.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "replicas.pools[0]", name = "url")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaRoutingConfig {
+
+    @Bean
+    ReadReplicaRouter readReplicaRouter(DataSourceProperties dataSourceProperties, Environment environment,
+                                        ReplicaProperties replicaProperties,
+                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        return new ReadReplicaRouter(primary, replicaProperties, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    DataSource dataSource(ReadReplicaRouter router) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(router.getPrimary());
+        dataSource.setReadOnlyDataSource(router.getReadOnlyDataSource());
+        return dataSource;
+    }
+}
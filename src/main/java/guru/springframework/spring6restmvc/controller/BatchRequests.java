@@ -0,0 +1,75 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.dto.DtoBase;
+import guru.springframework.spring6restmvc.dto.ErrorInfo;
+import guru.springframework.spring6restmvc.exception.BatchValidationException;
+import jakarta.validation.Validator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Up front validation of batch request bodies, so a batch is rejected as a whole before any of it is written.
+ */
+final class BatchRequests {
+
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private BatchRequests() {
+    }
+
+    /**
+     * @param validator validates each element's constraints, or null to only check for missing elements and ids
+     * @param requireIds whether every element must carry the id and version of an existing row, each id only
+     *                   once in the batch
+     */
+    static void validate(List<? extends DtoBase> items, Validator validator, boolean requireIds) {
+        checkSize(items.size(), "");
+        List<ErrorInfo> errors = new ArrayList<>();
+        Map<UUID, Integer> firstIndexById = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            String prefix = "[" + i + "]";
+            DtoBase item = items.get(i);
+            if(item == null) {
+                errors.add(ErrorInfo.builder().fieldName(prefix).errorDescription("must not be null").build());
+                continue;
+            }
+            if(requireIds) {
+                if(item.getId() == null) {
+                    errors.add(ErrorInfo.builder().fieldName(prefix + ".id").errorDescription("must not be null").build());
+                } else {
+                    Integer first = firstIndexById.putIfAbsent(item.getId(), i);
+                    if(first != null) {
+                        errors.add(ErrorInfo.builder().fieldName(prefix + ".id")
+                                .errorDescription("duplicates [" + first + "].id").build());
+                    }
+                }
+                // without it the element would be reported as a conflict, or overwrite changes it never saw
+                if(item.getVersion() == null) {
+                    errors.add(ErrorInfo.builder().fieldName(prefix + ".version").errorDescription("must not be null").build());
+                }
+            }
+            if(validator != null) {
+                validator.validate(item).forEach(violation -> errors.add(ErrorInfo.builder()
+                        .fieldName(prefix + "." + violation.getPropertyPath())
+                        .errorDescription(violation.getMessage())
+                        .build()));
+            }
+        }
+        if(!errors.isEmpty()) {
+            throw new BatchValidationException(errors);
+        }
+    }
+
+    static void checkSize(int size, String fieldName) {
+        if(size > MAX_BATCH_SIZE) {
+            throw new BatchValidationException(List.of(ErrorInfo.builder()
+                    .fieldName(fieldName)
+                    .errorDescription("size must be between 0 and " + MAX_BATCH_SIZE)
+                    .build()));
+        }
+    }
+}
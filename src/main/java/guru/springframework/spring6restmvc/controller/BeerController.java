@@ -1,19 +1,48 @@
 package guru.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import guru.springframework.spring6restmvc.exception.InvalidSearchException;
 import guru.springframework.spring6restmvc.exception.NotFoundException;
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
 import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerFilter;
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.dto.BeerStyleStatsDTO;
+import guru.springframework.spring6restmvc.dto.ChangeFeedPage;
+import guru.springframework.spring6restmvc.dto.InventoryAdjustmentDTO;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
 import guru.springframework.spring6restmvc.services.BeerService;
+import guru.springframework.spring6restmvc.services.CatalogStatisticsService;
+import guru.springframework.spring6restmvc.services.ChangeEventService;
+import guru.springframework.spring6restmvc.services.ChangeFeedService;
+import guru.springframework.spring6restmvc.services.IdempotencyService;
+import guru.springframework.spring6restmvc.services.IdempotencyService.Created;
+import guru.springframework.spring6restmvc.services.InventoryService;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
 
+import static guru.springframework.spring6restmvc.services.ChangeEventService.LAST_EVENT_ID_HEADER;
+import static guru.springframework.spring6restmvc.services.IdempotencyService.IDEMPOTENCY_KEY_HEADER;
+
 @RestController
 @RequiredArgsConstructor
 @Slf4j
@@ -22,7 +51,22 @@ public class BeerController {
 
     public static final String BEER_PATH = "/api/v1/beer";
     public static final String BEER_PATH_WITH_ID = BEER_PATH + "/{id}";
+    public static final String BEER_EXPORT_PATH = BEER_PATH + "/export";
+    public static final String BEER_BATCH_PATH = BEER_PATH + "/batch";
+    public static final String BEER_INVENTORY_PATH = BEER_PATH_WITH_ID + "/inventory";
+    public static final String BEER_SEARCH_PATH = BEER_PATH + "/search";
+    public static final String BEER_STATS_PATH = BEER_PATH + "/stats";
+    public static final String BEER_CHANGES_PATH = BEER_PATH + "/changes";
+    public static final String BEER_EVENTS_PATH = BEER_PATH + "/events";
+    public static final int MAX_SEARCH_LENGTH = 100;
     private final BeerService beerService;
+    private final InventoryService inventoryService;
+    private final CatalogStatisticsService catalogStatisticsService;
+    private final ChangeFeedService changeFeedService;
+    private final ChangeEventService changeEventService;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyService idempotencyService;
+    private final Validator validator;
 
     @DeleteMapping(BEER_PATH_WITH_ID)
     public ResponseEntity<Void> deleteById(@PathVariable("id") UUID id) {
@@ -31,39 +75,188 @@ public class BeerController {
         }
         throw new NotFoundException();
     }
+
+    /**
+     * Deletes every listed beer in one statement. Answers 404 only when none of the ids matched a beer.
+     */
+    @DeleteMapping(BEER_PATH)
+    public ResponseEntity<Void> deleteByIds(@RequestParam("ids") List<UUID> ids) {
+        BatchRequests.checkSize(ids.size(), "ids");
+        if(beerService.deleteAllById(ids) > 0) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        throw new NotFoundException();
+    }
+
     @PostMapping(BEER_PATH)
-    public ResponseEntity<BeerDTO> createBeer(@Validated @RequestBody BeerDTO beer) {
+    public ResponseEntity<BeerDTO> createBeer(@Validated @RequestBody BeerDTO beer,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                              String idempotencyKey) {
+        if(idempotencyKey != null) {
+            Created<BeerDTO> created = idempotencyService.create(BEER_PATH, idempotencyKey,
+                    () -> beerService.saveNewBeer(beer));
+            return created.replayed()
+                    ? IdempotentResponses.replayed(created, beerService.getBeerById(created.id()).orElse(null))
+                    : IdempotentResponses.created(created);
+        }
         BeerDTO savedBeer = beerService.saveNewBeer(beer);
         HttpHeaders headers = new HttpHeaders();
         headers.add("Location", BEER_PATH+"/"+savedBeer.getId());
         return new ResponseEntity<>(savedBeer, headers, HttpStatus.CREATED);
     }
 
+    @PostMapping(BEER_BATCH_PATH)
+    public ResponseEntity<List<BeerDTO>> createBeers(@RequestBody List<BeerDTO> beers) {
+        BatchRequests.validate(beers, validator, false);
+        return new ResponseEntity<>(beerService.saveNewBeers(beers), HttpStatus.CREATED);
+    }
+
+    @PutMapping(BEER_BATCH_PATH)
+    public BatchUpdateResult updateBeers(@RequestBody List<BeerDTO> beers) {
+        BatchRequests.validate(beers, validator, true);
+        return beerService.updateAll(beers);
+    }
+
+    @PatchMapping(BEER_BATCH_PATH)
+    public BatchUpdateResult patchBeers(@RequestBody List<BeerDTO> beers) {
+        BatchRequests.validate(beers, null, true);
+        return beerService.patchAll(beers);
+    }
+
     @PutMapping(BEER_PATH_WITH_ID)
-    public ResponseEntity<Void> updateById(@PathVariable("id") UUID beerId, @Validated @RequestBody BeerDTO beer) {
-        if(beerService.update(beerId, beer).isEmpty()) {
+    public ResponseEntity<Void> updateById(@PathVariable("id") UUID beerId, @Validated @RequestBody BeerDTO beer,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Integer expectedVersion = ifMatch == null ? null : ETags.expectedVersion(ifMatch, beerId);
+        if(!beerService.update(beerId, beer, expectedVersion)) {
             throw new NotFoundException();
         }
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT) ;
+        // the new version is only known without a read when the update was conditional
+        return expectedVersion == null
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.noContent().eTag(ETags.of(beerId, expectedVersion + 1)).build();
     }
 
     @PatchMapping(BEER_PATH_WITH_ID)
-    public ResponseEntity<Void> patchById(@PathVariable("id") UUID beerId, @RequestBody BeerDTO beer) {
-        if(beerService.patch(beerId, beer).isEmpty()) {
-            throw new NotFoundException();
-        }
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    public ResponseEntity<Void> patchById(@PathVariable("id") UUID beerId, @RequestBody BeerDTO beer,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Integer expectedVersion = ifMatch == null ? null : ETags.expectedVersion(ifMatch, beerId);
+        BeerDTO patchedBeer = beerService.patch(beerId, beer, expectedVersion).orElseThrow(NotFoundException::new);
+        return ResponseEntity.noContent()
+                .eTag(ETags.of(patchedBeer.getId(), patchedBeer.getVersion()))
+                .build();
+    }
+
+    @PatchMapping(value = BEER_PATH_WITH_ID, consumes = MergePatches.MEDIA_TYPE)
+    public ResponseEntity<Void> mergePatchById(@PathVariable("id") UUID beerId, @RequestBody ObjectNode patch,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Integer expectedVersion = ifMatch == null ? null : ETags.expectedVersion(ifMatch, beerId);
+        BeerDTO patchedBeer = beerService.mergePatch(beerId, MergePatches.of(objectMapper, patch), expectedVersion)
+                .orElseThrow(NotFoundException::new);
+        return ResponseEntity.noContent()
+                .eTag(ETags.of(patchedBeer.getId(), patchedBeer.getVersion()))
+                .build();
+    }
+
+    /**
+     * Answers 204 once the delta is applied, or 202 when it has been queued for a write-behind flush.
+     */
+    @PostMapping(BEER_INVENTORY_PATH)
+    public ResponseEntity<Void> adjustInventory(@PathVariable("id") UUID beerId,
+                                                @Validated @RequestBody InventoryAdjustmentDTO adjustment) {
+        return switch (inventoryService.adjust(beerId, adjustment.getDelta())) {
+            case APPLIED -> ResponseEntity.noContent().build();
+            case QUEUED -> ResponseEntity.accepted().build();
+            case NOT_FOUND -> throw new NotFoundException();
+        };
     }
 
     @GetMapping(BEER_PATH)
-    public List<BeerDTO> getBeers() {
-        return beerService.listBeers();
+    public ResponseEntity<List<BeerDTO>> getBeers(@RequestParam(value = "beerName", required = false) String beerName,
+                                                  @RequestParam(value = "beerStyle", required = false) BeerStyle beerStyle,
+                                                  @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
+                                                  @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
+                                                  @RequestParam(value = "inStock", required = false) Boolean inStock,
+                                                  @RequestParam(value = "pageToken", required = false) String pageToken,
+                                                  @RequestParam(value = "pageSize", required = false) Integer pageSize) {
+        BeerFilter filter = BeerFilter.builder()
+                .beerName(beerName)
+                .beerStyle(beerStyle)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .inStock(inStock)
+                .build();
+        KeysetPage<BeerDTO> page = beerService.listBeers(filter, pageToken, pageSize);
+        HttpHeaders headers = new HttpHeaders();
+        if(page.getNextPageToken() != null) {
+            headers.add(KeysetPage.NEXT_PAGE_TOKEN_HEADER, page.getNextPageToken());
+        }
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    @GetMapping(BEER_SEARCH_PATH)
+    public List<BeerDTO> searchBeers(@RequestParam("q") String query,
+                                     @RequestParam(value = "limit", required = false) Integer limit) {
+        if(query.isBlank() || query.length() > MAX_SEARCH_LENGTH) {
+            throw new InvalidSearchException("Search must be 1 to " + MAX_SEARCH_LENGTH + " characters");
+        }
+        return beerService.searchBeers(query.strip(), limit);
+    }
+
+    @GetMapping(BEER_STATS_PATH)
+    public List<BeerStyleStatsDTO> getBeerStats() {
+        return catalogStatisticsService.getStats();
+    }
+
+    @GetMapping(BEER_CHANGES_PATH)
+    public ChangeFeedPage<BeerDTO> getBeerChanges(@RequestParam(value = "since", required = false) String since,
+                                                  @RequestParam(value = "pageSize", required = false) Integer pageSize) {
+        return changeFeedService.getBeerChanges(since, pageSize);
+    }
+
+    @GetMapping(value = BEER_EVENTS_PATH, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBeerEvents(@RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        return changeEventService.subscribe(ChangeEventService.Topic.BEER, lastEventId);
+    }
+
+    @GetMapping(value = BEER_EXPORT_PATH, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportBeers() {
+        // rows are flushed by the output buffer rather than after every value
+        ObjectWriter writer = objectMapper.writerFor(BeerDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = writer.createGenerator(outputStream)) {
+                beerService.exportBeers(beer -> {
+                    try {
+                        writer.writeValue(generator, beer);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping(BEER_PATH_WITH_ID)
-    public BeerDTO getBeerById(@PathVariable("id") UUID id) {
-        log.info("in beer controller with id: {}", id);
-        return beerService.getBeerById(id).orElseThrow(NotFoundException::new);
+    public ResponseEntity<BeerDTO> getBeerById(@PathVariable("id") UUID id,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.debug("in beer controller with id: {}", id);
+        if(ifNoneMatch != null) {
+            // answer revalidation from the version column alone, without loading or mapping the beer
+            Integer version = beerService.getBeerVersion(id).orElseThrow(NotFoundException::new);
+            if(ETags.matches(ifNoneMatch, id, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(ETags.of(id, version))
+                        .build();
+            }
+        }
+        BeerDTO beer = beerService.getBeerById(id).orElseThrow(NotFoundException::new);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(beer.getId(), beer.getVersion()))
+                .body(beer);
     }
 
 }
@@ -1,18 +1,32 @@
 package guru.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import guru.springframework.spring6restmvc.exception.NotFoundException;
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
+import guru.springframework.spring6restmvc.dto.ChangeFeedPage;
 import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
+import guru.springframework.spring6restmvc.services.ChangeEventService;
+import guru.springframework.spring6restmvc.services.ChangeFeedService;
 import guru.springframework.spring6restmvc.services.CustomerService;
+import guru.springframework.spring6restmvc.services.IdempotencyService;
+import guru.springframework.spring6restmvc.services.IdempotencyService.Created;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.UUID;
 
+import static guru.springframework.spring6restmvc.services.ChangeEventService.LAST_EVENT_ID_HEADER;
+import static guru.springframework.spring6restmvc.services.IdempotencyService.IDEMPOTENCY_KEY_HEADER;
+
 @RestController
 @RequiredArgsConstructor
 @Slf4j
@@ -21,8 +35,15 @@ public class CustomerController {
 
     public static final String CUSTOMER_PATH = "/api/v1/customer";
     public static final String CUSTOMER_PATH_WITH_ID = CUSTOMER_PATH + "/{id}";
+    public static final String CUSTOMER_BATCH_PATH = CUSTOMER_PATH + "/batch";
+    public static final String CUSTOMER_CHANGES_PATH = CUSTOMER_PATH + "/changes";
+    public static final String CUSTOMER_EVENTS_PATH = CUSTOMER_PATH + "/events";
 
     private final CustomerService service;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyService idempotencyService;
+    private final ChangeFeedService changeFeedService;
+    private final ChangeEventService changeEventService;
 
     @DeleteMapping(CUSTOMER_PATH_WITH_ID)
     public ResponseEntity<Void> deleteById(@PathVariable("id") UUID id) {
@@ -33,18 +54,57 @@ public class CustomerController {
     }
 
     @GetMapping(CUSTOMER_PATH)
-    public List<CustomerDTO> getCustomers() {
-        return service.listCustomers();
+    public ResponseEntity<List<CustomerDTO>> getCustomers(@RequestParam(value = "pageToken", required = false) String pageToken,
+                                                          @RequestParam(value = "pageSize", required = false) Integer pageSize) {
+        KeysetPage<CustomerDTO> page = service.listCustomers(pageToken, pageSize);
+        HttpHeaders headers = new HttpHeaders();
+        if(page.getNextPageToken() != null) {
+            headers.add(KeysetPage.NEXT_PAGE_TOKEN_HEADER, page.getNextPageToken());
+        }
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    @GetMapping(CUSTOMER_CHANGES_PATH)
+    public ChangeFeedPage<CustomerDTO> getCustomerChanges(@RequestParam(value = "since", required = false) String since,
+                                                          @RequestParam(value = "pageSize", required = false) Integer pageSize) {
+        return changeFeedService.getCustomerChanges(since, pageSize);
+    }
+
+    @GetMapping(value = CUSTOMER_EVENTS_PATH, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCustomerEvents(@RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        return changeEventService.subscribe(ChangeEventService.Topic.CUSTOMER, lastEventId);
     }
 
     @GetMapping(CUSTOMER_PATH_WITH_ID)
-    public CustomerDTO getCustomerById(@PathVariable("id") UUID id) {
+    public ResponseEntity<CustomerDTO> getCustomerById(@PathVariable("id") UUID id,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.debug("in customer controller with id: {}", id);
-        return service.getCustomerById(id).orElseThrow(NotFoundException::new);
+        if(ifNoneMatch != null) {
+            // answer revalidation from the version column alone, without loading or mapping the customer
+            Integer version = service.getCustomerVersion(id).orElseThrow(NotFoundException::new);
+            if(ETags.matches(ifNoneMatch, id, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(ETags.of(id, version))
+                        .build();
+            }
+        }
+        CustomerDTO customer = service.getCustomerById(id).orElseThrow(NotFoundException::new);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(customer.getId(), customer.getVersion()))
+                .body(customer);
     }
 
     @PostMapping(CUSTOMER_PATH)
-    public ResponseEntity<CustomerDTO> createCustomer(@RequestBody CustomerDTO customer) {
+    public ResponseEntity<CustomerDTO> createCustomer(@RequestBody CustomerDTO customer,
+                                                      @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                                      String idempotencyKey) {
+        if(idempotencyKey != null) {
+            Created<CustomerDTO> created = idempotencyService.create(CUSTOMER_PATH, idempotencyKey,
+                    () -> service.saveNewCustomer(customer));
+            return created.replayed()
+                    ? IdempotentResponses.replayed(created, service.getCustomerById(created.id()).orElse(null))
+                    : IdempotentResponses.created(created);
+        }
         CustomerDTO savedCustomer = service.saveNewCustomer(customer);
         HttpHeaders headers = new HttpHeaders();
         headers.add("Location", "/api/v1/customer/"+savedCustomer.getId());
@@ -52,18 +112,49 @@ public class CustomerController {
     }
 
     @PutMapping(CUSTOMER_PATH_WITH_ID)
-    public ResponseEntity<Void> updateById(@PathVariable("id") UUID id, @RequestBody CustomerDTO customer) {
-        if(service.update(id, customer).isEmpty()) {
+    public ResponseEntity<Void> updateById(@PathVariable("id") UUID id, @RequestBody CustomerDTO customer,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Integer expectedVersion = ifMatch == null ? null : ETags.expectedVersion(ifMatch, id);
+        if(!service.update(id, customer, expectedVersion)) {
             throw new NotFoundException();
         }
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        // the new version is only known without a read when the update was conditional
+        return expectedVersion == null
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.noContent().eTag(ETags.of(id, expectedVersion + 1)).build();
+    }
+
+    @PutMapping(CUSTOMER_BATCH_PATH)
+    public BatchUpdateResult updateCustomers(@RequestBody List<CustomerDTO> customers) {
+        BatchRequests.validate(customers, null, true);
+        return service.updateAll(customers);
+    }
+
+    @PatchMapping(CUSTOMER_BATCH_PATH)
+    public BatchUpdateResult patchCustomers(@RequestBody List<CustomerDTO> customers) {
+        BatchRequests.validate(customers, null, true);
+        return service.patchAll(customers);
     }
 
     @PatchMapping(CUSTOMER_PATH_WITH_ID)
-    public ResponseEntity<Void> patchById(@PathVariable("id") UUID id, @RequestBody CustomerDTO customer) {
-        if(service.patch(id, customer).isEmpty()) {
-            throw new NotFoundException(String.format("Customer with id {} not found", id));
-        }
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    public ResponseEntity<Void> patchById(@PathVariable("id") UUID id, @RequestBody CustomerDTO customer,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Integer expectedVersion = ifMatch == null ? null : ETags.expectedVersion(ifMatch, id);
+        CustomerDTO patchedCustomer = service.patch(id, customer, expectedVersion)
+                .orElseThrow(() -> new NotFoundException(String.format("Customer with id %s not found", id)));
+        return ResponseEntity.noContent()
+                .eTag(ETags.of(patchedCustomer.getId(), patchedCustomer.getVersion()))
+                .build();
+    }
+
+    @PatchMapping(value = CUSTOMER_PATH_WITH_ID, consumes = MergePatches.MEDIA_TYPE)
+    public ResponseEntity<Void> mergePatchById(@PathVariable("id") UUID id, @RequestBody ObjectNode patch,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Integer expectedVersion = ifMatch == null ? null : ETags.expectedVersion(ifMatch, id);
+        CustomerDTO patchedCustomer = service.mergePatch(id, MergePatches.of(objectMapper, patch), expectedVersion)
+                .orElseThrow(() -> new NotFoundException(String.format("Customer with id %s not found", id)));
+        return ResponseEntity.noContent()
+                .eTag(ETags.of(patchedCustomer.getId(), patchedCustomer.getVersion()))
+                .build();
     }
 }
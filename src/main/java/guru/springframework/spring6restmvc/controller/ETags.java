@@ -0,0 +1,63 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.exception.PreconditionFailedException;
+
+import java.util.UUID;
+
+/**
+ * Strong entity tags built from an entity's id and {@code @Version}, so a tag changes exactly when the
+ * stored row does.
+ */
+final class ETags {
+
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    private ETags() {
+    }
+
+    static String of(UUID id, Integer version) {
+        return "\"" + id + ":" + version + "\"";
+    }
+
+    /**
+     * Whether an If-None-Match header matches the current version. Uses weak comparison, as RFC 9110 requires
+     * for If-None-Match.
+     */
+    static boolean matches(String ifNoneMatch, UUID id, Integer version) {
+        String current = of(id, version);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if(tag.startsWith(WEAK_PREFIX)) {
+                tag = tag.substring(WEAK_PREFIX.length());
+            }
+            if(tag.equals(ANY) || tag.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The version an If-Match header requires the entity to be at, or null when any version will do.
+     *
+     * @throws PreconditionFailedException when none of the tags can match this entity
+     */
+    static Integer expectedVersion(String ifMatch, UUID id) {
+        String prefix = "\"" + id + ":";
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if(tag.equals(ANY)) {
+                return null;
+            }
+            if(tag.startsWith(prefix) && tag.endsWith("\"")) {
+                try {
+                    return Integer.valueOf(tag.substring(prefix.length(), tag.length() - 1));
+                } catch (NumberFormatException e) {
+                    // not one of our tags, try the next one
+                }
+            }
+        }
+        throw new PreconditionFailedException("If-Match does not match " + id);
+    }
+}
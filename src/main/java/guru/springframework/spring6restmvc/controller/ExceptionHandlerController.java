@@ -1,8 +1,11 @@
 package guru.springframework.spring6restmvc.controller;
 
 import guru.springframework.spring6restmvc.dto.ErrorInfo;
+import guru.springframework.spring6restmvc.exception.BatchValidationException;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.TransactionSystemException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -29,20 +32,41 @@ public class ExceptionHandlerController {
         return ResponseEntity.badRequest().body(errors);
     }
 
+    @ExceptionHandler(BatchValidationException.class)
+    public ResponseEntity<List<ErrorInfo>> handleBatchValidationErrors(BatchValidationException ex) {
+        return ResponseEntity.badRequest().body(ex.getErrors());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Void> handleConcurrentModification(OptimisticLockingFailureException ex) {
+        return new ResponseEntity<>(HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(TransactionSystemException.class)
     public ResponseEntity<List<ErrorInfo>> handleDatabaseViolations(TransactionSystemException ex) {
         ResponseEntity.BodyBuilder builder = ResponseEntity.badRequest();
         List<ErrorInfo> errors = new ArrayList<>();
         if(ex.getCause().getCause() instanceof ConstraintViolationException cause) {
-            Set<ConstraintViolation<?>> constraintViolations = cause.getConstraintViolations();
-            errors = constraintViolations.stream()
-                    .map(cv ->
-                            ErrorInfo.builder()
-                                    .fieldName(cv.getPropertyPath().toString())
-                                    .errorDescription(cv.getMessage())
-                                    .build()
-                    ).toList();
+            errors = toErrorInfos(cause.getConstraintViolations());
         }
         return builder.body(errors);
     }
+
+    /**
+     * Entity constraint violations raised by an explicit flush, rather than on commit.
+     */
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<List<ErrorInfo>> handleConstraintViolations(ConstraintViolationException ex) {
+        return ResponseEntity.badRequest().body(toErrorInfos(ex.getConstraintViolations()));
+    }
+
+    private List<ErrorInfo> toErrorInfos(Set<ConstraintViolation<?>> constraintViolations) {
+        return constraintViolations.stream()
+                .map(cv ->
+                        ErrorInfo.builder()
+                                .fieldName(cv.getPropertyPath().toString())
+                                .errorDescription(cv.getMessage())
+                                .build()
+                ).toList();
+    }
 }
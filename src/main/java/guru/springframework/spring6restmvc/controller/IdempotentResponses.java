@@ -0,0 +1,33 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.services.IdempotencyService;
+import guru.springframework.spring6restmvc.services.IdempotencyService.Created;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * 201 responses to create requests made with an Idempotency-Key. A retry gets the same status and Location as the
+ * original request, with the resource as it is now, and is marked with an Idempotent-Replayed header.
+ */
+final class IdempotentResponses {
+
+    private IdempotentResponses() {
+    }
+
+    static <T> ResponseEntity<T> created(Created<T> created) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(HttpHeaders.LOCATION, created.location())
+                .body(created.body());
+    }
+
+    /**
+     * @param current the resource as it is now, or null if it has been deleted since
+     */
+    static <T> ResponseEntity<T> replayed(Created<T> created, T current) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(HttpHeaders.LOCATION, created.location())
+                .header(IdempotencyService.IDEMPOTENT_REPLAYED_HEADER, "true")
+                .body(current);
+    }
+}
@@ -0,0 +1,30 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import guru.springframework.spring6restmvc.exception.InvalidPatchException;
+
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+
+/**
+ * RFC 7396 JSON merge patches: members present in the patch replace the current values, null members clear
+ * them and absent members are left alone.
+ */
+final class MergePatches {
+
+    static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    private MergePatches() {
+    }
+
+    static <T> UnaryOperator<T> of(ObjectMapper objectMapper, ObjectNode patch) {
+        return current -> {
+            try {
+                return objectMapper.readerForUpdating(current).readValue(patch);
+            } catch (IOException e) {
+                throw new InvalidPatchException("Unable to apply merge patch", e);
+            }
+        };
+    }
+}
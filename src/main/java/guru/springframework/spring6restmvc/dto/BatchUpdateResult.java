@@ -0,0 +1,18 @@
+package guru.springframework.spring6restmvc.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of a batch update, by id. Conflicts are elements whose version no longer matched the stored row.
+ */
+@Getter
+@Builder
+public class BatchUpdateResult {
+    private final List<UUID> updated;
+    private final List<UUID> notFound;
+    private final List<UUID> conflicts;
+}
@@ -2,18 +2,26 @@ package guru.springframework.spring6restmvc.dto;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Builder
 @Getter
 @Setter
+@NoArgsConstructor
+@AllArgsConstructor
 public class BeerDTO extends DtoBase {
 
     @NotBlank
+    @Size(max = 20)
     private String beerName;
     @NotNull
     private BeerStyle beerStyle;
@@ -22,4 +30,17 @@ public class BeerDTO extends DtoBase {
     private Integer quantityOnHand;
     @NotNull
     private BigDecimal price;
+
+    /**
+     * Used by the repository projection queries to select a beer straight into its DTO.
+     */
+    public BeerDTO(UUID id, Integer version, LocalDateTime createdDate, LocalDateTime updateDate,
+                   String beerName, BeerStyle beerStyle, String upc, Integer quantityOnHand, BigDecimal price) {
+        super(id, version, createdDate, updateDate);
+        this.beerName = beerName;
+        this.beerStyle = beerStyle;
+        this.upc = upc;
+        this.quantityOnHand = quantityOnHand;
+        this.price = price;
+    }
 }
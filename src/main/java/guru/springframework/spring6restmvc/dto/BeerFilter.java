@@ -0,0 +1,19 @@
+package guru.springframework.spring6restmvc.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Optional criteria for narrowing a beer listing. Unset fields don't filter.
+ */
+@Getter
+@Builder
+public class BeerFilter {
+    private final String beerName;
+    private final BeerStyle beerStyle;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final Boolean inStock;
+}
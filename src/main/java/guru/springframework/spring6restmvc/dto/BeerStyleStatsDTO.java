@@ -0,0 +1,26 @@
+package guru.springframework.spring6restmvc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Catalog totals for one beer style. The average price is derived from the totals, and is null for a style with
+ * no beers.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class BeerStyleStatsDTO {
+    private final BeerStyle beerStyle;
+    private final long beerCount;
+    private final long totalQuantityOnHand;
+    private final BigDecimal totalPrice;
+
+    public BigDecimal getAveragePrice() {
+        return beerCount == 0 ? null : totalPrice.divide(BigDecimal.valueOf(beerCount), 2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,18 @@
+package guru.springframework.spring6restmvc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * What is pushed to event stream subscribers when a beer or customer is created, updated or deleted. Only the
+ * id is sent; subscribers fetch the resource if they need it.
+ */
+@Getter
+@AllArgsConstructor
+public class ChangeEventDTO {
+
+    private final UUID id;
+    private final ChangeType type;
+}
@@ -0,0 +1,22 @@
+package guru.springframework.spring6restmvc.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resources created or changed, and ids of resources deleted, since a watermark. Passing the next watermark back
+ * continues from where this page stopped; it is always set, so a client can keep it until it next syncs. More
+ * means further changes are ready to be fetched straight away.
+ */
+@Getter
+@Builder
+public class ChangeFeedPage<T> {
+
+    private final List<T> changed;
+    private final List<UUID> deleted;
+    private final String nextWatermark;
+    private final boolean more;
+}
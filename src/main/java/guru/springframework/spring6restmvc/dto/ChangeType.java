@@ -0,0 +1,7 @@
+package guru.springframework.spring6restmvc.dto;
+
+public enum ChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
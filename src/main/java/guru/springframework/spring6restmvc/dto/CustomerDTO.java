@@ -2,6 +2,9 @@ package guru.springframework.spring6restmvc.dto;
 
 import lombok.*;
 
+import java.time.LocalDateTime;
+import java.util.UUID;
+
 @Builder
 @Getter
 @Setter
@@ -9,4 +12,12 @@ import lombok.*;
 @AllArgsConstructor
 public class CustomerDTO extends DtoBase {
     private String name;
+
+    /**
+     * Used by the repository projection queries to select a customer straight into its DTO.
+     */
+    public CustomerDTO(UUID id, Integer version, LocalDateTime createdDate, LocalDateTime updateDate, String name) {
+        super(id, version, createdDate, updateDate);
+        this.name = name;
+    }
 }
@@ -1,7 +1,10 @@
 package guru.springframework.spring6restmvc.dto;
 
 import jakarta.persistence.MappedSuperclass;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
@@ -10,9 +13,14 @@ import java.util.UUID;
 @Getter
 @Setter
 @MappedSuperclass
+@NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
 public class DtoBase {
     private UUID id;
-    private Integer version = 0;
+    /**
+     * Null until the row exists, so a batch update can tell a missing version from version 0.
+     */
+    private Integer version;
     private LocalDateTime createdDate = LocalDateTime.now();
     private LocalDateTime updateDate = LocalDateTime.now();
 }
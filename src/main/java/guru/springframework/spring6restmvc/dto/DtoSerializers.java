@@ -0,0 +1,137 @@
+package guru.springframework.spring6restmvc.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Hand-written serializers for the DTOs returned in bulk, writing each field straight to the generator instead
+ * of going through bean introspection. They produce exactly what the default bean serializers would, including
+ * ISO-8601 dates, but format the dates without a DateTimeFormatter. Deserialization is left to Jackson.
+ */
+@JsonComponent
+public class DtoSerializers {
+
+    public static class BeerDTOSerializer extends StdSerializer<BeerDTO> {
+
+        public BeerDTOSerializer() {
+            super(BeerDTO.class);
+        }
+
+        @Override
+        public void serialize(BeerDTO beer, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(beer);
+            writeBase(beer, gen, provider);
+            gen.writeStringField("beerName", beer.getBeerName());
+            writeEnumField(gen, provider, "beerStyle", beer.getBeerStyle());
+            gen.writeStringField("upc", beer.getUpc());
+            writeNumberField(gen, "quantityOnHand", beer.getQuantityOnHand());
+            gen.writeFieldName("price");
+            gen.writeNumber(beer.getPrice());
+            gen.writeEndObject();
+        }
+    }
+
+    public static class CustomerDTOSerializer extends StdSerializer<CustomerDTO> {
+
+        public CustomerDTOSerializer() {
+            super(CustomerDTO.class);
+        }
+
+        @Override
+        public void serialize(CustomerDTO customer, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(customer);
+            writeBase(customer, gen, provider);
+            gen.writeStringField("name", customer.getName());
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeBase(DtoBase dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStringField("id", dto.getId() == null ? null : dto.getId().toString());
+        writeNumberField(gen, "version", dto.getVersion());
+        writeDateField(gen, provider, "createdDate", dto.getCreatedDate());
+        writeDateField(gen, provider, "updateDate", dto.getUpdateDate());
+    }
+
+    private static void writeNumberField(JsonGenerator gen, String name, Integer value) throws IOException {
+        gen.writeFieldName(name);
+        if(value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+
+    private static void writeEnumField(JsonGenerator gen, SerializerProvider provider, String name,
+                                       Enum<?> value) throws IOException {
+        gen.writeFieldName(name);
+        if(value == null) {
+            gen.writeNull();
+        } else if(provider.isEnabled(SerializationFeature.WRITE_ENUMS_USING_TO_STRING)
+                || provider.isEnabled(SerializationFeature.WRITE_ENUMS_USING_INDEX)) {
+            provider.defaultSerializeValue(value, gen);
+        } else {
+            gen.writeString(value.name());
+        }
+    }
+
+    private static void writeDateField(JsonGenerator gen, SerializerProvider provider, String name,
+                                       LocalDateTime value) throws IOException {
+        gen.writeFieldName(name);
+        if(value == null) {
+            gen.writeNull();
+        } else if(provider.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)) {
+            provider.defaultSerializeValue(value, gen);
+        } else if(value.getYear() < 0 || value.getYear() > 9999) {
+            // signed or five digit years
+            gen.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value));
+        } else {
+            char[] chars = new char[29];
+            int length = formatIsoLocalDateTime(value, chars);
+            gen.writeString(chars, 0, length);
+        }
+    }
+
+    /**
+     * Same output as {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME}: seconds always present and the fraction
+     * written only as far as its last non-zero digit. Only for years 0 to 9999.
+     */
+    static int formatIsoLocalDateTime(LocalDateTime value, char[] chars) {
+        digits(chars, 0, value.getYear(), 4);
+        chars[4] = '-';
+        digits(chars, 5, value.getMonthValue(), 2);
+        chars[7] = '-';
+        digits(chars, 8, value.getDayOfMonth(), 2);
+        chars[10] = 'T';
+        digits(chars, 11, value.getHour(), 2);
+        chars[13] = ':';
+        digits(chars, 14, value.getMinute(), 2);
+        chars[16] = ':';
+        digits(chars, 17, value.getSecond(), 2);
+        int nano = value.getNano();
+        if(nano == 0) {
+            return 19;
+        }
+        chars[19] = '.';
+        digits(chars, 20, nano, 9);
+        int length = 29;
+        while(chars[length - 1] == '0') {
+            length--;
+        }
+        return length;
+    }
+
+    private static void digits(char[] chars, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package guru.springframework.spring6restmvc.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A signed change to a beer's quantity on hand, e.g. -2 for a sale of two or 24 for a delivery.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryAdjustmentDTO {
+    @NotNull
+    private Integer delta;
+}
@@ -0,0 +1,29 @@
+package guru.springframework.spring6restmvc.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A single page of a keyset (cursor) paginated listing. The next page token is opaque to clients
+ * and is null when there are no further rows.
+ */
+@Getter
+@Builder
+public class KeysetPage<T> {
+
+    public static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+    public static final int DEFAULT_PAGE_SIZE = 25;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final List<T> content;
+    private final String nextPageToken;
+
+    public static int boundedPageSize(Integer requested) {
+        if(requested == null || requested < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+}
@@ -1,21 +1,77 @@
 package guru.springframework.spring6restmvc.entities;
 
+import guru.springframework.spring6restmvc.dto.BeerDTO;
 import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+import jakarta.persistence.ColumnResult;
+import jakarta.persistence.ConstructorResult;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.NamedNativeQuery;
+import jakarta.persistence.SqlResultSetMapping;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Getter
 @Setter
 @Builder
 @Entity
+@Table(indexes = {
+        @Index(name = "beer_update_date_id_idx", columnList = "updateDate, id"),
+        @Index(name = "beer_beer_style_idx", columnList = "beerStyle"),
+        @Index(name = "beer_price_idx", columnList = "price")
+})
+/*
+ * Fuzzy name search relies on the pg_trgm GiST index created by schema-postgresql.sql. <% keeps names whose
+ * word similarity to the query reaches pg_trgm.word_similarity_threshold, and ordering by the <<-> distance lets
+ * the index return the best matches first, so only the requested number of rows is ever read.
+ */
+@NamedNativeQuery(name = "Beer.searchByName", resultSetMapping = "BeerDTO",
+        query = "select b.id, b.version, b.created_date, b.update_date, b.beer_name, b.beer_style, b.upc, "
+                + "b.quantity_on_hand, b.price from beer b "
+                + "where :query <% b.beer_name order by :query <<-> b.beer_name limit :limit")
+@SqlResultSetMapping(name = "BeerDTO", classes = @ConstructorResult(targetClass = BeerDTO.class, columns = {
+        @ColumnResult(name = "id", type = UUID.class),
+        @ColumnResult(name = "version", type = Integer.class),
+        @ColumnResult(name = "created_date", type = LocalDateTime.class),
+        @ColumnResult(name = "update_date", type = LocalDateTime.class),
+        @ColumnResult(name = "beer_name", type = String.class),
+        @ColumnResult(name = "beer_style", type = BeerStyle.class),
+        @ColumnResult(name = "upc", type = String.class),
+        @ColumnResult(name = "quantity_on_hand", type = Integer.class),
+        @ColumnResult(name = "price", type = BigDecimal.class)
+}))
+@SqlResultSetMapping(name = Beer.CHANGE_MAPPING, classes = @ConstructorResult(targetClass = BeerChangedEvent.class,
+        columns = {
+                @ColumnResult(name = "id", type = UUID.class),
+                @ColumnResult(name = "old_beer_style", type = BeerStyle.class),
+                @ColumnResult(name = "old_quantity_on_hand", type = Integer.class),
+                @ColumnResult(name = "old_price", type = BigDecimal.class),
+                @ColumnResult(name = "beer_style", type = BeerStyle.class),
+                @ColumnResult(name = "quantity_on_hand", type = Integer.class),
+                @ColumnResult(name = "price", type = BigDecimal.class)
+        }))
+@SqlResultSetMapping(name = Beer.DELETION_MAPPING, classes = @ConstructorResult(targetClass = BeerChangedEvent.class,
+        columns = {
+                @ColumnResult(name = "id", type = UUID.class),
+                @ColumnResult(name = "beer_style", type = BeerStyle.class),
+                @ColumnResult(name = "quantity_on_hand", type = Integer.class),
+                @ColumnResult(name = "price", type = BigDecimal.class)
+        }))
 @AllArgsConstructor
 @NoArgsConstructor
 public class Beer extends ModelBase {
+
+    public static final String CHANGE_MAPPING = "BeerChange";
+    public static final String DELETION_MAPPING = "BeerDeletion";
+
     @NotBlank
     @Size(max = 20)
     private String beerName;
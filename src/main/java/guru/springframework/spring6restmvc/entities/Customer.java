@@ -1,12 +1,15 @@
 package guru.springframework.spring6restmvc.entities;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.*;
 
 @Getter
 @Setter
 @Builder
 @Entity
+@Table(indexes = @Index(name = "customer_update_date_id_idx", columnList = "updateDate, id"))
 @AllArgsConstructor
 @NoArgsConstructor
 public class Customer extends ModelBase {
@@ -0,0 +1,51 @@
+package guru.springframework.spring6restmvc.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * What a create request with an Idempotency-Key created, so that a retry can be answered with the same resource.
+ */
+@Getter
+@Setter
+@Builder
+@Entity
+@Table(indexes = @Index(name = "idempotency_record_created_date_idx", columnList = "createdDate"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord implements Persistable<String> {
+
+    /**
+     * The collection the resource was created in and the client's key.
+     */
+    @Id
+    @Column(length = 320)
+    private String scopedKey;
+    @Column(length = 36, columnDefinition = "UUID", nullable = false)
+    private UUID resourceId;
+    @Column(nullable = false)
+    private String location;
+    @Column(nullable = false)
+    private LocalDateTime createdDate;
+
+    @Override
+    public String getId() {
+        return scopedKey;
+    }
+
+    /**
+     * Records are never updated, so saving one always inserts it without reading first.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
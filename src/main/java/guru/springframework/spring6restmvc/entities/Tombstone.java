@@ -0,0 +1,65 @@
+package guru.springframework.spring6restmvc.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.*;
+import org.hibernate.annotations.SQLInsert;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Marks a deleted beer or customer, so the change feeds can report deletions as well as changes. Inserting a
+ * tombstone for an id that already has one moves it to the new deletion, so an id deleted a second time, e.g. a
+ * seeded row the seeders recreated, doesn't fail its delete on the primary key.
+ */
+@Getter
+@Setter
+@Builder
+@Entity
+@Table(indexes = @Index(name = "tombstone_resource_type_deleted_date_resource_id_idx",
+        columnList = "resourceType, deletedDate, resourceId"))
+// parameters are bound in Hibernate's insert order: the other columns alphabetically, then the id
+@SQLInsert(sql = "insert into tombstone (deleted_date, resource_type, resource_id) values (?, ?, ?) "
+        + "on conflict (resource_id) do update "
+        + "set deleted_date = excluded.deleted_date, resource_type = excluded.resource_type")
+@AllArgsConstructor
+@NoArgsConstructor
+public class Tombstone implements Persistable<UUID> {
+
+    public enum ResourceType {
+        BEER, CUSTOMER
+    }
+
+    @Id
+    @Column(length = 36, columnDefinition = "UUID", updatable = false, nullable = false)
+    private UUID resourceId;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private ResourceType resourceType;
+    @Column(nullable = false)
+    private LocalDateTime deletedDate;
+
+    public static Tombstone of(ResourceType resourceType, UUID resourceId) {
+        return new Tombstone(resourceId, resourceType, LocalDateTime.now());
+    }
+
+    @Override
+    public UUID getId() {
+        return resourceId;
+    }
+
+    /**
+     * Saving a tombstone always inserts it without reading first, replacing any earlier one for the id.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
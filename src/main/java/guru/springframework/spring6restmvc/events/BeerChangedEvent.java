@@ -0,0 +1,47 @@
+package guru.springframework.spring6restmvc.events;
+
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.dto.ChangeType;
+import guru.springframework.spring6restmvc.entities.Beer;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Published by the beer services when a beer is created, changed or deleted, carrying the figures that feed the
+ * catalog statistics before and after the change. A null before means the beer was created, a null after that it
+ * was deleted.
+ */
+public record BeerChangedEvent(UUID beerId, Snapshot before, Snapshot after) {
+
+    public record Snapshot(BeerStyle beerStyle, Integer quantityOnHand, BigDecimal price) {
+
+        public static Snapshot of(Beer beer) {
+            return new Snapshot(beer.getBeerStyle(), beer.getQuantityOnHand(), beer.getPrice());
+        }
+    }
+
+    /**
+     * Maps a row of old and new values returned by an {@code UPDATE ... RETURNING}.
+     */
+    public BeerChangedEvent(UUID beerId, BeerStyle oldBeerStyle, Integer oldQuantityOnHand, BigDecimal oldPrice,
+                            BeerStyle beerStyle, Integer quantityOnHand, BigDecimal price) {
+        this(beerId, new Snapshot(oldBeerStyle, oldQuantityOnHand, oldPrice),
+                new Snapshot(beerStyle, quantityOnHand, price));
+    }
+
+    /**
+     * Maps a row returned by a {@code DELETE ... RETURNING}.
+     */
+    public BeerChangedEvent(UUID beerId, BeerStyle beerStyle, Integer quantityOnHand, BigDecimal price) {
+        this(beerId, new Snapshot(beerStyle, quantityOnHand, price), null);
+    }
+
+    public ChangeType type() {
+        return before == null ? ChangeType.CREATED : after == null ? ChangeType.DELETED : ChangeType.UPDATED;
+    }
+
+    public static BeerChangedEvent created(Beer beer) {
+        return new BeerChangedEvent(beer.getId(), null, Snapshot.of(beer));
+    }
+}
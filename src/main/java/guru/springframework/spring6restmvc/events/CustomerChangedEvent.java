@@ -0,0 +1,11 @@
+package guru.springframework.spring6restmvc.events;
+
+import guru.springframework.spring6restmvc.dto.ChangeType;
+
+import java.util.UUID;
+
+/**
+ * Published by the customer service when a customer is created, changed or deleted.
+ */
+public record CustomerChangedEvent(UUID customerId, ChangeType type) {
+}
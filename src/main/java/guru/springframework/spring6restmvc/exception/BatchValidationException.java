@@ -0,0 +1,21 @@
+package guru.springframework.spring6restmvc.exception;
+
+import guru.springframework.spring6restmvc.dto.ErrorInfo;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Raised when one or more elements of a batch request fail validation. Field names in the errors are
+ * prefixed with the index of the offending element, e.g. {@code [3].beerName}.
+ */
+@Getter
+public class BatchValidationException extends RuntimeException {
+
+    private final List<ErrorInfo> errors;
+
+    public BatchValidationException(List<ErrorInfo> errors) {
+        super("Batch failed validation");
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "Idempotency Key In Use")
+public class IdempotencyKeyInUseException extends RuntimeException {
+    public IdempotencyKeyInUseException() {
+    }
+
+    public IdempotencyKeyInUseException(String message) {
+        super(message);
+    }
+
+}
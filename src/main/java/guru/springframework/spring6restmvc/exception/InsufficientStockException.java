@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "Insufficient Stock")
+public class InsufficientStockException extends RuntimeException {
+    public InsufficientStockException() {
+    }
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid Idempotency Key")
+public class InvalidIdempotencyKeyException extends RuntimeException {
+    public InvalidIdempotencyKeyException() {
+    }
+
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid Inventory Adjustment")
+public class InvalidInventoryAdjustmentException extends RuntimeException {
+    public InvalidInventoryAdjustmentException() {
+    }
+
+    public InvalidInventoryAdjustmentException(String message) {
+        super(message);
+    }
+
+}
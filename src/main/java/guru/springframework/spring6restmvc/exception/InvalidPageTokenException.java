@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid Page Token")
+public class InvalidPageTokenException extends RuntimeException {
+    public InvalidPageTokenException() {
+    }
+
+    public InvalidPageTokenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
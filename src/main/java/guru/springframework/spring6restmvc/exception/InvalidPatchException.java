@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid Patch")
+public class InvalidPatchException extends RuntimeException {
+    public InvalidPatchException() {
+    }
+
+    public InvalidPatchException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid Search")
+public class InvalidSearchException extends RuntimeException {
+    public InvalidSearchException() {
+    }
+
+    public InvalidSearchException(String message) {
+        super(message);
+    }
+
+}
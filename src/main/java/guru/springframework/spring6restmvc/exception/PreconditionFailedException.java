@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PRECONDITION_FAILED, reason = "Precondition Failed")
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException() {
+    }
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+
+}
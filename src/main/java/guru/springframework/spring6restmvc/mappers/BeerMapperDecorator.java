@@ -2,6 +2,7 @@ package guru.springframework.spring6restmvc.mappers;
 
 import guru.springframework.spring6restmvc.entities.Beer;
 import guru.springframework.spring6restmvc.dto.BeerDTO;
+import io.micrometer.core.annotation.Timed;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -14,11 +15,14 @@ public abstract class BeerMapperDecorator extends MapperDecoratorBase implements
     private BeerMapper delegate;
 
     @Override
+    @Timed(value = "beer.mapper", histogram = true)
     public BeerDTO modelToDto(Beer beer) {
         BeerDTO dto = delegate.modelToDto(beer);
         return (BeerDTO)this.setBaseFieldsOnDtoFromModel(beer, dto);
     }
 
+    @Override
+    @Timed(value = "beer.mapper", histogram = true)
     public Beer dtoToModel(BeerDTO dto) {
         Beer model = delegate.dtoToModel(dto);
         return (Beer)this.setBaseFieldsOnModelFromDto(dto, model);
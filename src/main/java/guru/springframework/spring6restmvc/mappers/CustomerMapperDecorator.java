@@ -2,6 +2,7 @@ package guru.springframework.spring6restmvc.mappers;
 
 import guru.springframework.spring6restmvc.entities.Customer;
 import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import io.micrometer.core.annotation.Timed;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -14,11 +15,14 @@ public abstract class CustomerMapperDecorator extends MapperDecoratorBase implem
     private CustomerMapper delegate;
 
     @Override
+    @Timed(value = "customer.mapper", histogram = true)
     public CustomerDTO modelToDto(Customer model) {
         CustomerDTO dto = delegate.modelToDto(model);
         return (CustomerDTO) this.setBaseFieldsOnDtoFromModel(model, dto);
     }
 
+    @Override
+    @Timed(value = "customer.mapper", histogram = true)
     public Customer dtoToModel(CustomerDTO dto) {
         Customer model = delegate.dtoToModel(dto);
         return (Customer) this.setBaseFieldsOnModelFromDto(dto, model);
@@ -0,0 +1,44 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Single statement writes that don't load the beer first, but still report what they changed by way of
+ * PostgreSQL's RETURNING clause. Like {@code @Modifying(flushAutomatically = true, clearAutomatically = true)}
+ * queries, each flushes pending changes beforehand and clears the persistence context afterwards.
+ */
+public interface BeerChangeRepository {
+
+    /**
+     * Replaces a beer's fields and bumps its version.
+     *
+     * @param version the version the beer must be at, or null for any version
+     * @return the change, empty when the beer is missing or at another version
+     */
+    Optional<BeerChangedEvent> updateById(UUID id, Integer version, String beerName, BeerStyle beerStyle,
+                                          String upc, Integer quantityOnHand, BigDecimal price,
+                                          LocalDateTime updateDate);
+
+    /**
+     * Adds the delta to the quantity on hand, as long as the result stays non-negative. A missing quantity counts
+     * as zero.
+     *
+     * @return the change, empty when the beer is missing or would go below zero
+     */
+    Optional<BeerChangedEvent> adjustQuantityOnHand(UUID id, int delta, LocalDateTime updateDate);
+
+    /**
+     * @return the deletion, empty when there was no such beer
+     */
+    Optional<BeerChangedEvent> bulkDeleteById(UUID id);
+
+    List<BeerChangedEvent> bulkDeleteByIdIn(Collection<UUID> ids);
+}
@@ -0,0 +1,90 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.RequiredArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+class BeerChangeRepositoryImpl implements BeerChangeRepository {
+
+    // the locked sub-select reads the row as it was just before this update changes it
+    private static final String UPDATE_BY_ID = "update beer b set beer_name = :beerName, beer_style = :beerStyle, "
+            + "upc = :upc, quantity_on_hand = :quantityOnHand, price = :price, "
+            + "version = b.version + 1, update_date = :updateDate "
+            + "from (select id, beer_style, quantity_on_hand, price from beer where id = :id for update) old "
+            + "where b.id = old.id and b.version = coalesce(:version, b.version) "
+            + "returning b.id, old.beer_style as old_beer_style, old.quantity_on_hand as old_quantity_on_hand, "
+            + "old.price as old_price, b.beer_style, b.quantity_on_hand, b.price";
+
+    private static final String ADJUST_QUANTITY_ON_HAND = "update beer b "
+            + "set quantity_on_hand = coalesce(b.quantity_on_hand, 0) + :delta, "
+            + "version = b.version + 1, update_date = :updateDate "
+            + "where b.id = :id and coalesce(b.quantity_on_hand, 0) + :delta >= 0 "
+            + "returning b.id, b.beer_style as old_beer_style, b.quantity_on_hand - :delta as old_quantity_on_hand, "
+            + "b.price as old_price, b.beer_style, b.quantity_on_hand, b.price";
+
+    private static final String DELETE_BY_ID = "delete from beer b where b.id = :id "
+            + "returning b.id, b.beer_style, b.quantity_on_hand, b.price";
+
+    private static final String DELETE_BY_ID_IN = "delete from beer b where b.id in (:ids) "
+            + "returning b.id, b.beer_style, b.quantity_on_hand, b.price";
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Optional<BeerChangedEvent> updateById(UUID id, Integer version, String beerName, BeerStyle beerStyle,
+                                                 String upc, Integer quantityOnHand, BigDecimal price,
+                                                 LocalDateTime updateDate) {
+        return first(entityManager.createNativeQuery(UPDATE_BY_ID, Beer.CHANGE_MAPPING)
+                .setParameter("id", id)
+                .setParameter("version", version)
+                .setParameter("beerName", beerName)
+                .setParameter("beerStyle", beerStyle)
+                .setParameter("upc", upc)
+                .setParameter("quantityOnHand", quantityOnHand)
+                .setParameter("price", price)
+                .setParameter("updateDate", updateDate));
+    }
+
+    @Override
+    public Optional<BeerChangedEvent> adjustQuantityOnHand(UUID id, int delta, LocalDateTime updateDate) {
+        return first(entityManager.createNativeQuery(ADJUST_QUANTITY_ON_HAND, Beer.CHANGE_MAPPING)
+                .setParameter("id", id)
+                .setParameter("delta", delta)
+                .setParameter("updateDate", updateDate));
+    }
+
+    @Override
+    public Optional<BeerChangedEvent> bulkDeleteById(UUID id) {
+        return first(entityManager.createNativeQuery(DELETE_BY_ID, Beer.DELETION_MAPPING)
+                .setParameter("id", id));
+    }
+
+    @Override
+    public List<BeerChangedEvent> bulkDeleteByIdIn(Collection<UUID> ids) {
+        return execute(entityManager.createNativeQuery(DELETE_BY_ID_IN, Beer.DELETION_MAPPING)
+                .setParameter("ids", ids));
+    }
+
+    private Optional<BeerChangedEvent> first(Query query) {
+        return execute(query).stream().findFirst();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BeerChangedEvent> execute(Query query) {
+        entityManager.flush();
+        List<BeerChangedEvent> changes = query.getResultList();
+        entityManager.clear();
+        return changes;
+    }
+}
@@ -0,0 +1,16 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.entities.Beer;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Specification queries that select straight into {@link BeerDTO}, so no managed entities are created.
+ */
+public interface BeerDtoRepository {
+
+    List<BeerDTO> findAllDtos(Specification<Beer> specification, Sort sort, int limit);
+}
@@ -0,0 +1,49 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.entities.Beer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+@RequiredArgsConstructor
+class BeerDtoRepositoryImpl implements BeerDtoRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<BeerDTO> findAllDtos(Specification<Beer> specification, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BeerDTO> query = cb.createQuery(BeerDTO.class);
+        Root<Beer> root = query.from(Beer.class);
+        query.select(cb.construct(BeerDTO.class,
+                root.get("id"),
+                root.get("version"),
+                root.get("createdDate"),
+                root.get("updateDate"),
+                root.get("beerName"),
+                root.get("beerStyle"),
+                root.get("upc"),
+                root.get("quantityOnHand"),
+                root.get("price")));
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if(predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(toOrders(sort, root, cb));
+        return entityManager.createQuery(query)
+                .setHint(HINT_READ_ONLY, true)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
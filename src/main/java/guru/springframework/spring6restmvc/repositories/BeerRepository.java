@@ -1,10 +1,52 @@
 package guru.springframework.spring6restmvc.repositories;
 
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerStyleStatsDTO;
 import guru.springframework.spring6restmvc.entities.Beer;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface BeerRepository extends JpaRepository<Beer, UUID> {
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
+public interface BeerRepository extends JpaRepository<Beer, UUID>, JpaSpecificationExecutor<Beer>, BeerDtoRepository,
+        BeerChangeRepository {
+
+    @Query("select b.version from Beer b where b.id = :id")
+    Optional<Integer> findVersionById(@Param("id") UUID id);
+
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select new guru.springframework.spring6restmvc.dto.BeerDTO(b.id, b.version, b.createdDate, b.updateDate, "
+            + "b.beerName, b.beerStyle, b.upc, b.quantityOnHand, b.price) from Beer b where b.id = :id")
+    Optional<BeerDTO> findDtoById(@Param("id") UUID id);
+
+    @Query("select new guru.springframework.spring6restmvc.dto.BeerStyleStatsDTO(b.beerStyle, count(b), "
+            + "coalesce(sum(b.quantityOnHand), 0), coalesce(sum(b.price), 0)) from Beer b group by b.beerStyle")
+    List<BeerStyleStatsDTO> sumByBeerStyle();
+
+    /**
+     * Beers whose names resemble the query, best match first. Tolerates misspellings and partial names.
+     * Needs PostgreSQL with the pg_trgm extension.
+     */
+    @Query(name = "Beer.searchByName", nativeQuery = true)
+    List<BeerDTO> searchByName(@Param("query") String query, @Param("limit") int limit);
+
+    /**
+     * Forward-only cursor over every beer. Must be consumed, and closed, inside a transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select b from Beer b")
+    Stream<Beer> streamAll();
 }
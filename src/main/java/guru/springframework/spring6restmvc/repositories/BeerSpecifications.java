@@ -0,0 +1,70 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.dto.BeerFilter;
+import guru.springframework.spring6restmvc.entities.Beer;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public final class BeerSpecifications {
+
+    public static final Sort KEYSET_ORDER = Sort.by("updateDate", "id");
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private BeerSpecifications() {
+    }
+
+    /**
+     * Name is matched as a prefix rather than a substring so the predicate can use the varchar_pattern_ops index
+     * on beer name created by schema-postgresql.sql.
+     */
+    public static Specification<Beer> matching(BeerFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if(filter != null) {
+                if(filter.getBeerName() != null && !filter.getBeerName().isBlank()) {
+                    predicates.add(cb.like(root.get("beerName"), escapeLike(filter.getBeerName()) + "%", LIKE_ESCAPE));
+                }
+                if(filter.getBeerStyle() != null) {
+                    predicates.add(cb.equal(root.get("beerStyle"), filter.getBeerStyle()));
+                }
+                if(filter.getMinPrice() != null) {
+                    predicates.add(cb.greaterThanOrEqualTo(root.get("price"), filter.getMinPrice()));
+                }
+                if(filter.getMaxPrice() != null) {
+                    predicates.add(cb.lessThanOrEqualTo(root.get("price"), filter.getMaxPrice()));
+                }
+                if(filter.getInStock() != null) {
+                    predicates.add(filter.getInStock()
+                            ? cb.greaterThan(root.get("quantityOnHand"), 0)
+                            : cb.or(cb.isNull(root.get("quantityOnHand")), cb.lessThanOrEqualTo(root.get("quantityOnHand"), 0)));
+                }
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Rows strictly after the given (updateDate, id) position in {@link #KEYSET_ORDER}. The leading
+     * updateDate >= predicate lets the database start a range scan on the (updateDate, id) index.
+     */
+    public static Specification<Beer> after(LocalDateTime updateDate, UUID id) {
+        return (root, query, cb) -> cb.and(
+                cb.greaterThanOrEqualTo(root.get("updateDate"), updateDate),
+                cb.or(
+                        cb.greaterThan(root.get("updateDate"), updateDate),
+                        cb.greaterThan(root.get("id"), id)));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
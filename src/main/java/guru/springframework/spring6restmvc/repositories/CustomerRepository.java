@@ -1,10 +1,60 @@
 package guru.springframework.spring6restmvc.repositories;
 
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
 import guru.springframework.spring6restmvc.entities.Customer;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 public interface CustomerRepository extends JpaRepository<Customer, UUID> {
 
+    String SELECT_DTO = "select new guru.springframework.spring6restmvc.dto.CustomerDTO("
+            + "c.id, c.version, c.createdDate, c.updateDate, c.name) from Customer c";
+
+    @Query("select c.version from Customer c where c.id = :id")
+    Optional<Integer> findVersionById(@Param("id") UUID id);
+
+    /**
+     * Replaces a customer's fields and bumps its version in a single statement, without loading it first.
+     *
+     * @param version the version the customer must be at, or null for any version
+     * @return the number of rows updated, 0 when the customer is missing or at another version
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Customer c set c.name = :name, c.version = c.version + 1, c.updateDate = :updateDate "
+            + "where c.id = :id and c.version = coalesce(:version, c.version)")
+    int updateById(@Param("id") UUID id, @Param("version") Integer version,
+                   @Param("name") String name, @Param("updateDate") LocalDateTime updateDate);
+
+    /**
+     * Deletes without loading the customer first.
+     *
+     * @return the number of rows deleted
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Customer c where c.id = :id")
+    int bulkDeleteById(@Param("id") UUID id);
+
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query(SELECT_DTO + " where c.id = :id")
+    Optional<CustomerDTO> findDtoById(@Param("id") UUID id);
+
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query(SELECT_DTO + " order by c.updateDate, c.id")
+    List<CustomerDTO> findAllDtos(Limit limit);
+
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query(SELECT_DTO + " where (c.updateDate, c.id) > (:updateDate, :id) order by c.updateDate, c.id")
+    List<CustomerDTO> findAllDtosAfter(@Param("updateDate") LocalDateTime updateDate, @Param("id") UUID id, Limit limit);
 }
@@ -0,0 +1,40 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.entities.Tombstone;
+import guru.springframework.spring6restmvc.entities.Tombstone.ResourceType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+public interface TombstoneRepository extends JpaRepository<Tombstone, UUID> {
+
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select t from Tombstone t where t.resourceType = :resourceType and t.deletedDate < :before "
+            + "order by t.deletedDate, t.resourceId")
+    List<Tombstone> findDeletedBefore(@Param("resourceType") ResourceType resourceType,
+                                      @Param("before") LocalDateTime before, Limit limit);
+
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select t from Tombstone t where t.resourceType = :resourceType "
+            + "and (t.deletedDate, t.resourceId) > (:deletedDate, :id) and t.deletedDate < :before "
+            + "order by t.deletedDate, t.resourceId")
+    List<Tombstone> findDeletedAfter(@Param("resourceType") ResourceType resourceType,
+                                     @Param("deletedDate") LocalDateTime deletedDate, @Param("id") UUID id,
+                                     @Param("before") LocalDateTime before, Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Tombstone t where t.deletedDate < :cutoff")
+    int deleteByDeletedDateBefore(@Param("cutoff") LocalDateTime cutoff);
+}
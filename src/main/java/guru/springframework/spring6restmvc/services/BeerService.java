@@ -1,21 +1,83 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
 import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerFilter;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.UnaryOperator;
+import java.util.function.Consumer;
 
 public interface BeerService {
 
-    List<BeerDTO> listBeers();
+    KeysetPage<BeerDTO> listBeers(BeerFilter filter, String pageToken, Integer pageSize);
     Optional<BeerDTO> getBeerById(UUID id);
 
+    /**
+     * Beers with names similar to the query, most similar first. Copes with misspelt and partial names.
+     */
+    List<BeerDTO> searchBeers(String query, Integer limit);
+
+    /**
+     * Current version of the beer, read without loading the beer itself.
+     */
+    Optional<Integer> getBeerVersion(UUID id);
+
+    /**
+     * Hands every beer to the consumer one at a time, without holding the full catalog in memory.
+     */
+    void exportBeers(Consumer<BeerDTO> consumer);
+
     BeerDTO saveNewBeer(BeerDTO beer);
 
-    Optional<BeerDTO> update(UUID beerId, BeerDTO beer);
+    /**
+     * Persists all the beers in a single transaction, sending the inserts to the database in JDBC batches.
+     */
+    List<BeerDTO> saveNewBeers(List<BeerDTO> beers);
+
+    /**
+     * @param expectedVersion version the beer must currently be at, or null to update whatever the version
+     * @return false when there is no beer with that id
+     * @throws guru.springframework.spring6restmvc.exception.PreconditionFailedException when the version differs
+     */
+    boolean update(UUID beerId, BeerDTO beer, Integer expectedVersion);
+
+    /**
+     * Replaces every beer in the list, identified by id, in one transaction. A beer whose version differs
+     * from the stored one is reported as a conflict and left untouched.
+     */
+    BatchUpdateResult updateAll(List<BeerDTO> beers);
 
     boolean deleteById(UUID id);
 
-    Optional<BeerDTO> patch(UUID beerId, BeerDTO beer);
+    /**
+     * Deletes every beer with one of the given ids in a single statement.
+     *
+     * @return the number of beers deleted, ids with no beer are ignored
+     */
+    int deleteAllById(Collection<UUID> ids);
+
+    /**
+     * @param expectedVersion version the beer must currently be at, or null to patch whatever the version
+     * @throws guru.springframework.spring6restmvc.exception.PreconditionFailedException when the version differs
+     */
+    Optional<BeerDTO> patch(UUID beerId, BeerDTO beer, Integer expectedVersion);
+
+    /**
+     * Applies an RFC 7396 merge patch. The patch is handed the beer's current state and returns the patched state.
+     * Only the columns it changes are updated, and a patch that changes nothing leaves the version alone.
+     *
+     * @param expectedVersion version the beer must currently be at, or null to patch whatever the version
+     * @throws guru.springframework.spring6restmvc.exception.PreconditionFailedException when the version differs
+     */
+    Optional<BeerDTO> mergePatch(UUID beerId, UnaryOperator<BeerDTO> patch, Integer expectedVersion);
+
+    /**
+     * Batch equivalent of {@link #patch(UUID, BeerDTO, Integer)}, with the same version checks as {@link #updateAll(List)}.
+     */
+    BatchUpdateResult patchAll(List<BeerDTO> beers);
 }
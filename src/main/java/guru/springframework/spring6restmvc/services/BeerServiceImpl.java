@@ -1,91 +1,314 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.config.CachingConfig;
 import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent.Snapshot;
+import guru.springframework.spring6restmvc.exception.PreconditionFailedException;
 import guru.springframework.spring6restmvc.mappers.BeerMapper;
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
 import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerFilter;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
 import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.BeerSpecifications;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
 
 @Slf4j
 @RequiredArgsConstructor
 @Service
+@Timed(value = "beer.service", histogram = true)
+@CacheConfig(cacheNames = CachingConfig.BEER_CACHE)
 public class BeerServiceImpl implements BeerService {
 
     private final BeerRepository repository;
     private final BeerMapper mapper;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
 
     @Override
-    public List<BeerDTO> listBeers() {
-        return repository.findAll()
-                .stream()
-                .map(mapper::modelToDto)
-                .toList();
+    @Transactional(readOnly = true)
+    public KeysetPage<BeerDTO> listBeers(BeerFilter filter, String pageToken, Integer pageSize) {
+        int size = KeysetPage.boundedPageSize(pageSize);
+        Specification<Beer> specification = BeerSpecifications.matching(filter);
+        if(pageToken != null) {
+            KeysetCursor cursor = KeysetCursor.decode(pageToken);
+            specification = specification.and(BeerSpecifications.after(cursor.updateDate(), cursor.id()));
+        }
+        // fetch one extra row to find out whether there is a further page
+        List<BeerDTO> beers = repository.findAllDtos(specification, BeerSpecifications.KEYSET_ORDER, size + 1);
+        boolean hasMore = beers.size() > size;
+        List<BeerDTO> page = hasMore ? beers.subList(0, size) : beers;
+        return KeysetPage.<BeerDTO>builder()
+                .content(page)
+                .nextPageToken(hasMore ? KeysetCursor.of(page.get(size - 1)).encode() : null)
+                .build();
     }
 
     @Override
+    // not read-only, so it reads the primary: a stale row from a lagging replica would stay cached
+    @Transactional
+    @Cacheable(key = "#id", unless = "#result == null")
     public Optional<BeerDTO> getBeerById(UUID id) {
         log.debug("retrieving beer for id: {}", id);
-        return Optional.ofNullable(mapper.modelToDto(repository.findById(id).orElse(null)));
+        return repository.findDtoById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BeerDTO> searchBeers(String query, Integer limit) {
+        return repository.searchByName(query, KeysetPage.boundedPageSize(limit));
+    }
+
+    @Override
+    public Optional<Integer> getBeerVersion(UUID id) {
+        return repository.findVersionById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBeers(Consumer<BeerDTO> consumer) {
+        try (Stream<Beer> beers = repository.streamAll()) {
+            beers.forEach(beer -> {
+                consumer.accept(mapper.modelToDto(beer));
+                // keep the persistence context from growing with the table
+                entityManager.detach(beer);
+            });
+        }
     }
 
     @Override
     public BeerDTO saveNewBeer(BeerDTO beerDTO) {
-        Beer beer = mapper.dtoToModel(beerDTO);
-        Beer savedBeer = repository.save(beer);
+        Beer savedBeer = repository.save(newBeer(beerDTO));
+        eventPublisher.publishEvent(BeerChangedEvent.created(savedBeer));
         return mapper.modelToDto(savedBeer);
     }
 
     @Override
-    public Optional<BeerDTO> update(UUID beerId, BeerDTO beer) {
-        AtomicReference<Optional<BeerDTO>> beerReference = new AtomicReference<>();
-        repository.findById(beerId).ifPresentOrElse( existingBeer -> {
-            existingBeer.setBeerName(beer.getBeerName());
-            existingBeer.setBeerStyle(beer.getBeerStyle());
-            existingBeer.setPrice(beer.getPrice());
-            existingBeer.setQuantityOnHand(beer.getQuantityOnHand());
-            existingBeer.setUpc(beer.getUpc());
-            Beer savedBeer = repository.save(existingBeer);
-            beerReference.set(Optional.of(mapper.modelToDto(savedBeer)));
-        }, () -> beerReference.set(Optional.empty()));
-        return beerReference.get();
+    @Transactional
+    public List<BeerDTO> saveNewBeers(List<BeerDTO> beerDTOs) {
+        List<BeerDTO> savedBeers = new ArrayList<>(beerDTOs.size());
+        for (int from = 0; from < beerDTOs.size(); from += batchSize) {
+            List<Beer> chunk = beerDTOs.subList(from, Math.min(from + batchSize, beerDTOs.size()))
+                    .stream()
+                    .map(this::newBeer)
+                    .toList();
+            repository.saveAll(chunk).forEach(beer -> {
+                savedBeers.add(mapper.modelToDto(beer));
+                eventPublisher.publishEvent(BeerChangedEvent.created(beer));
+            });
+            repository.flush();
+            // release the flushed chunk so the persistence context stays bounded
+            entityManager.clear();
+        }
+        return savedBeers;
+    }
+
+    /**
+     * Clears any client supplied id and version so the beer is persisted, and its insert batched,
+     * rather than merged. Ids are always generated, so a deleted beer's id is never reused.
+     */
+    private Beer newBeer(BeerDTO dto) {
+        Beer beer = mapper.dtoToModel(dto);
+        beer.setId(null);
+        beer.setVersion(null);
+        return beer;
     }
 
     @Override
-    public boolean deleteById(UUID id) {
-        if(repository.existsById(id)) {
-            repository.deleteById(id);
+    @Transactional
+    @CacheEvict(key = "#beerId")
+    public boolean update(UUID beerId, BeerDTO beer, Integer expectedVersion) {
+        Optional<BeerChangedEvent> change = repository.updateById(beerId, expectedVersion, beer.getBeerName(),
+                beer.getBeerStyle(), beer.getUpc(), beer.getQuantityOnHand(), beer.getPrice(), LocalDateTime.now());
+        if(change.isPresent()) {
+            eventPublisher.publishEvent(change.get());
             return true;
         }
+        // only a missed update pays for the extra query telling a missing beer from a stale version
+        if(expectedVersion != null && repository.findVersionById(beerId).isPresent()) {
+            throw new PreconditionFailedException("Beer " + beerId + " is no longer at version " + expectedVersion);
+        }
         return false;
     }
 
     @Override
-    public Optional<BeerDTO> patch(UUID beerId, BeerDTO beer) {
-        AtomicReference<Optional<BeerDTO>> atomicReference = new AtomicReference<>();
-        repository.findById(beerId).ifPresentOrElse(existingBeer -> {
-            existingBeer.setBeerName(defaultIfBlank(beer.getBeerName(), existingBeer.getBeerName()));
-            if (beer.getBeerStyle() != null) {
-                existingBeer.setBeerStyle(beer.getBeerStyle());
-            }
-            if (beer.getPrice() != null) {
-                existingBeer.setPrice(beer.getPrice());
-            }
-            if (beer.getQuantityOnHand() != null) {
-                existingBeer.setQuantityOnHand(beer.getQuantityOnHand());
+    @Transactional
+    @CacheEvict(key = "#id")
+    public boolean deleteById(UUID id) {
+        Optional<BeerChangedEvent> deletion = repository.bulkDeleteById(id);
+        deletion.ifPresent(eventPublisher::publishEvent);
+        return deletion.isPresent();
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(allEntries = true)
+    public int deleteAllById(Collection<UUID> ids) {
+        if(ids.isEmpty()) {
+            return 0;
+        }
+        List<BeerChangedEvent> deletions = repository.bulkDeleteByIdIn(ids);
+        deletions.forEach(eventPublisher::publishEvent);
+        return deletions.size();
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(key = "#beerId")
+    public Optional<BeerDTO> patch(UUID beerId, BeerDTO beer, Integer expectedVersion) {
+        return repository.findById(beerId).map(existingBeer -> {
+            checkVersion(existingBeer, expectedVersion);
+            Before before = Before.of(existingBeer);
+            applyPatch(existingBeer, beer);
+            return flushAndMap(existingBeer, before);
+        });
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(key = "#beerId")
+    public Optional<BeerDTO> mergePatch(UUID beerId, UnaryOperator<BeerDTO> patch, Integer expectedVersion) {
+        return repository.findById(beerId).map(existingBeer -> {
+            checkVersion(existingBeer, expectedVersion);
+            Before before = Before.of(existingBeer);
+            applyUpdate(existingBeer, patch.apply(mapper.modelToDto(existingBeer)));
+            return flushAndMap(existingBeer, before);
+        });
+    }
+
+    /**
+     * A beer's version and statistics figures before a change is applied to it.
+     */
+    private record Before(Integer version, Snapshot snapshot) {
+
+        static Before of(Beer beer) {
+            return new Before(beer.getVersion(), Snapshot.of(beer));
+        }
+    }
+
+    /**
+     * Flushes the managed beer so the returned DTO carries its new version. Dirty checking leaves an unchanged
+     * beer out of the flush altogether, and then no event is published.
+     */
+    private BeerDTO flushAndMap(Beer beer, Before before) {
+        repository.flush();
+        publishIfChanged(beer, before);
+        return mapper.modelToDto(beer);
+    }
+
+    /**
+     * Any change bumps the version, including one to fields the statistics don't track, such as the name.
+     */
+    private void publishIfChanged(Beer beer, Before before) {
+        if(!beer.getVersion().equals(before.version())) {
+            eventPublisher.publishEvent(new BeerChangedEvent(beer.getId(), before.snapshot(), Snapshot.of(beer)));
+        }
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(allEntries = true)
+    public BatchUpdateResult updateAll(List<BeerDTO> beers) {
+        return applyAll(beers, this::applyUpdate);
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(allEntries = true)
+    public BatchUpdateResult patchAll(List<BeerDTO> beers) {
+        return applyAll(beers, this::applyPatch);
+    }
+
+    /**
+     * Loads every targeted beer with a single query and applies the changes to the managed entities, so the
+     * resulting UPDATEs are flushed together as a JDBC batch.
+     */
+    private BatchUpdateResult applyAll(List<BeerDTO> beers, BiConsumer<Beer, BeerDTO> changes) {
+        Map<UUID, Beer> existingBeers = repository.findAllById(beers.stream().map(BeerDTO::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(Beer::getId, Function.identity()));
+        List<UUID> updated = new ArrayList<>();
+        List<UUID> notFound = new ArrayList<>();
+        List<UUID> conflicts = new ArrayList<>();
+        Map<Beer, Before> before = new LinkedHashMap<>();
+        beers.forEach(beer -> {
+            Beer existingBeer = existingBeers.get(beer.getId());
+            if(existingBeer == null) {
+                notFound.add(beer.getId());
+            } else if(!existingBeer.getVersion().equals(beer.getVersion())) {
+                conflicts.add(beer.getId());
+            } else {
+                before.putIfAbsent(existingBeer, Before.of(existingBeer));
+                changes.accept(existingBeer, beer);
+                updated.add(beer.getId());
             }
-            existingBeer.setUpc(defaultIfBlank(beer.getUpc(), existingBeer.getUpc()));
-            Beer saved = repository.save(existingBeer);
-            atomicReference.set(Optional.of(mapper.modelToDto(saved)));
-        }, () -> atomicReference.set(Optional.empty()));
-        return atomicReference.get();
+        });
+        repository.flush();
+        before.forEach(this::publishIfChanged);
+        return BatchUpdateResult.builder()
+                .updated(updated)
+                .notFound(notFound)
+                .conflicts(conflicts)
+                .build();
+    }
+
+    private void checkVersion(Beer existingBeer, Integer expectedVersion) {
+        if(expectedVersion != null && !expectedVersion.equals(existingBeer.getVersion())) {
+            throw new PreconditionFailedException("Beer " + existingBeer.getId() + " is no longer at version " + expectedVersion);
+        }
+    }
+
+    private void applyUpdate(Beer existingBeer, BeerDTO beer) {
+        existingBeer.setBeerName(beer.getBeerName());
+        existingBeer.setBeerStyle(beer.getBeerStyle());
+        existingBeer.setPrice(beer.getPrice());
+        existingBeer.setQuantityOnHand(beer.getQuantityOnHand());
+        existingBeer.setUpc(beer.getUpc());
+    }
+
+    private void applyPatch(Beer existingBeer, BeerDTO beer) {
+        existingBeer.setBeerName(defaultIfBlank(beer.getBeerName(), existingBeer.getBeerName()));
+        if (beer.getBeerStyle() != null) {
+            existingBeer.setBeerStyle(beer.getBeerStyle());
+        }
+        if (beer.getPrice() != null) {
+            existingBeer.setPrice(beer.getPrice());
+        }
+        if (beer.getQuantityOnHand() != null) {
+            existingBeer.setQuantityOnHand(beer.getQuantityOnHand());
+        }
+        existingBeer.setUpc(defaultIfBlank(beer.getUpc(), existingBeer.getUpc()));
     }
 }
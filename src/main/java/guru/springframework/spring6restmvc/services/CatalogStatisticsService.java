@@ -0,0 +1,18 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.BeerStyleStatsDTO;
+
+import java.util.List;
+
+public interface CatalogStatisticsService {
+
+    /**
+     * Totals for every beer style, served from memory without touching the database.
+     */
+    List<BeerStyleStatsDTO> getStats();
+
+    /**
+     * Recomputes the totals from the beer table, correcting any drift from changes made outside the services.
+     */
+    void reconcile();
+}
@@ -0,0 +1,123 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.dto.BeerStyleStatsDTO;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent.Snapshot;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps running totals per beer style, applying each committed {@link BeerChangedEvent} as a delta, so reading
+ * the statistics costs one entry per style however many beers there are.
+ * <p>
+ * The totals are rebuilt from a GROUP BY once the application is ready and then every
+ * {@code catalog.stats.reconcile-interval}, which corrects writes that bypass the services, such as the seeders.
+ * A change committed while a reconcile is running may be counted twice or missed until the next one.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+@Timed(value = "catalog.statistics.service", histogram = true)
+public class CatalogStatisticsServiceImpl implements CatalogStatisticsService {
+
+    private final BeerRepository repository;
+
+    private final AtomicReference<Map<BeerStyle, Totals>> totals = new AtomicReference<>(emptyTotals());
+
+    @Override
+    public List<BeerStyleStatsDTO> getStats() {
+        Map<BeerStyle, Totals> current = totals.get();
+        return Arrays.stream(BeerStyle.values())
+                .map(beerStyle -> current.get(beerStyle).toDto(beerStyle))
+                .toList();
+    }
+
+    /**
+     * Applied after commit, so rolled back changes never reach the totals.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        // e.g. a rename, which leaves the totals as they are
+        if(event.before() != null && event.before().equals(event.after())) {
+            return;
+        }
+        Map<BeerStyle, Totals> current = totals.get();
+        if(event.before() != null) {
+            current.get(event.before().beerStyle()).add(event.before(), -1);
+        }
+        if(event.after() != null) {
+            current.get(event.after().beerStyle()).add(event.after(), 1);
+        }
+    }
+
+    @Override
+    // not read-only, so it reads the primary: later deltas are applied on top of these totals
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${catalog.stats.reconcile-interval:PT5M}",
+            initialDelayString = "${catalog.stats.reconcile-interval:PT5M}")
+    public void reconcile() {
+        Map<BeerStyle, Totals> reconciled = emptyTotals();
+        repository.sumByBeerStyle().forEach(stats -> reconciled.get(stats.getBeerStyle()).set(stats));
+        totals.set(reconciled);
+        log.debug("reconciled catalog statistics");
+    }
+
+    private static Map<BeerStyle, Totals> emptyTotals() {
+        Map<BeerStyle, Totals> empty = new EnumMap<>(BeerStyle.class);
+        Arrays.stream(BeerStyle.values()).forEach(beerStyle -> empty.put(beerStyle, new Totals()));
+        return empty;
+    }
+
+    /**
+     * Prices are summed in cents so that the adders stay exact.
+     */
+    private static final class Totals {
+        private final LongAdder beerCount = new LongAdder();
+        private final LongAdder quantityOnHand = new LongAdder();
+        private final LongAdder priceCents = new LongAdder();
+
+        void add(Snapshot beer, int sign) {
+            beerCount.add(sign);
+            quantityOnHand.add(sign * (long) (beer.quantityOnHand() == null ? 0 : beer.quantityOnHand()));
+            priceCents.add(sign * cents(beer.price()));
+        }
+
+        void set(BeerStyleStatsDTO stats) {
+            beerCount.add(stats.getBeerCount());
+            quantityOnHand.add(stats.getTotalQuantityOnHand());
+            priceCents.add(cents(stats.getTotalPrice()));
+        }
+
+        BeerStyleStatsDTO toDto(BeerStyle beerStyle) {
+            return BeerStyleStatsDTO.builder()
+                    .beerStyle(beerStyle)
+                    .beerCount(beerCount.sum())
+                    .totalQuantityOnHand(quantityOnHand.sum())
+                    .totalPrice(BigDecimal.valueOf(priceCents.sum(), 2))
+                    .build();
+        }
+
+        private static long cents(BigDecimal price) {
+            return price == null ? 0 : price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+    }
+}
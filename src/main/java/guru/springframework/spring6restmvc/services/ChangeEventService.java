@@ -0,0 +1,22 @@
+package guru.springframework.spring6restmvc.services;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface ChangeEventService {
+
+    String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    enum Topic {
+        BEER, CUSTOMER
+    }
+
+    /**
+     * Streams a {@link guru.springframework.spring6restmvc.dto.ChangeEventDTO} for every committed change to a
+     * topic's resources. A subscriber that reconnects with the id of the last event it saw is sent what it missed
+     * first. If those events are no longer held, it is sent a {@code reset} event instead and should resync, for
+     * example from the change feed.
+     *
+     * @param lastEventId the id of the last event the subscriber saw, or null for only new events
+     */
+    SseEmitter subscribe(Topic topic, String lastEventId);
+}
@@ -0,0 +1,313 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.dto.ChangeEventDTO;
+import guru.springframework.spring6restmvc.dto.ChangeType;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+import guru.springframework.spring6restmvc.events.CustomerChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes committed changes to event stream subscribers. Connections are held as async requests, so an idle
+ * subscriber costs no thread; events are written by a small shared pool, one subscriber at a time.
+ * <p>
+ * Each subscriber has a buffer of {@code events.sse.buffer-size} events. A subscriber that falls that far behind
+ * is disconnected rather than slowing the others down, and picks up where it left off when it reconnects. The
+ * last {@code events.sse.replay-size} events of each topic are kept for that. Event ids start with this process's
+ * start time, so ids from before a restart are recognised and answered with a {@code reset}. A comment is sent
+ * every {@code events.sse.heartbeat-interval} to keep idle connections open and to notice dead ones.
+ */
+@Slf4j
+@Service
+public class ChangeEventServiceImpl implements ChangeEventService {
+
+    static final String RESET_EVENT = "reset";
+    // how long a disconnected EventSource waits before reconnecting
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final Duration timeout;
+    private final int bufferSize;
+    private final int replaySize;
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final Map<Topic, Channel> channels = new EnumMap<>(Topic.class);
+    private final Set<DataWithMediaType> heartbeat = SseEmitter.event().comment("").build();
+
+    @Autowired
+    public ChangeEventServiceImpl(ObjectMapper objectMapper,
+                                  @Value("${events.sse.delivery-threads:4}") int deliveryThreads,
+                                  @Value("${events.sse.timeout:PT30M}") Duration timeout,
+                                  @Value("${events.sse.buffer-size:256}") int bufferSize,
+                                  @Value("${events.sse.replay-size:1024}") int replaySize) {
+        this(objectMapper, Executors.newFixedThreadPool(deliveryThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sse-delivery");
+            thread.setDaemon(true);
+            return thread;
+        }), timeout, bufferSize, replaySize);
+    }
+
+    ChangeEventServiceImpl(ObjectMapper objectMapper, Executor executor, Duration timeout, int bufferSize,
+                           int replaySize) {
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.bufferSize = bufferSize;
+        this.replaySize = replaySize;
+        for (Topic topic : Topic.values()) {
+            channels.put(topic, new Channel());
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe(Topic topic, String lastEventId) {
+        Subscriber subscriber = new Subscriber(channels.get(topic), new SseEmitter(timeout.toMillis()));
+        subscriber.channel.add(subscriber, lastEventId);
+        return subscriber.emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        publish(Topic.BEER, event.beerId(), event.type());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        publish(Topic.CUSTOMER, event.customerId(), event.type());
+    }
+
+    @Scheduled(fixedRateString = "${events.sse.heartbeat-interval:PT15S}")
+    public void sendHeartbeats() {
+        channels.values().forEach(channel -> channel.subscribers.forEach(subscriber -> subscriber.offer(heartbeat)));
+    }
+
+    @PreDestroy
+    public void close() {
+        channels.values().forEach(channel -> channel.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        if(executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    int subscriberCount(Topic topic) {
+        return channels.get(topic).subscribers.size();
+    }
+
+    private void publish(Topic topic, UUID id, ChangeType type) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(new ChangeEventDTO(id, type));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        channels.get(topic).publish(data);
+    }
+
+    private record Event(long sequence, Set<DataWithMediaType> content) {
+    }
+
+    /**
+     * The subscribers of one topic and its most recent events. Publishing and subscribing hold its lock, so a
+     * new subscriber gets each event exactly once, either replayed or live.
+     */
+    private final class Channel {
+
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final Deque<Event> recent = new ArrayDeque<>();
+        private long sequence;
+
+        synchronized void publish(String data) {
+            sequence++;
+            // the JSON is written once and shared by every subscriber
+            Event event = new Event(sequence, SseEmitter.event()
+                    .id(epoch + "-" + sequence)
+                    .data(data, MediaType.APPLICATION_JSON)
+                    .build());
+            recent.addLast(event);
+            if(recent.size() > replaySize) {
+                recent.removeFirst();
+            }
+            subscribers.forEach(subscriber -> subscriber.offer(event.content()));
+        }
+
+        synchronized void add(Subscriber subscriber, String lastEventId) {
+            // also commits the response headers, so the client knows it is subscribed
+            subscriber.replay(SseEmitter.event().reconnectTime(RECONNECT_MILLIS).build());
+            if(lastEventId != null) {
+                replay(subscriber, lastEventId);
+            }
+            subscribers.add(subscriber);
+        }
+
+        private void replay(Subscriber subscriber, String lastEventId) {
+            long last = lastSequence(lastEventId);
+            long oldest = recent.isEmpty() ? sequence + 1 : recent.getFirst().sequence();
+            if(last < 0 || last > sequence || last < oldest - 1) {
+                subscriber.replay(SseEmitter.event().name(RESET_EVENT).data(RESET_EVENT).build());
+                return;
+            }
+            recent.stream()
+                    .filter(event -> event.sequence() > last)
+                    .forEach(event -> subscriber.replay(event.content()));
+        }
+
+        /**
+         * @return the sequence number within this process, or -1 for an id from another process or no id at all
+         */
+        private long lastSequence(String lastEventId) {
+            int separator = lastEventId.lastIndexOf('-');
+            if(separator < 0 || !lastEventId.substring(0, separator).equals(epoch)) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(lastEventId.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    private final class Subscriber {
+
+        private final Channel channel;
+        private final SseEmitter emitter;
+        private final Queue<Set<DataWithMediaType>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean dropped = new AtomicBoolean();
+        /**
+         * Held by the delivery thread while writing, and by the emitter's callbacks. Spring MVC calls those on a
+         * container thread once the request has ended, and Tomcat recycles the connection for another request
+         * when they return, so they wait for a write in progress: a write that outlives them can end up on that
+         * other request's response. Publishers never take it.
+         */
+        private final Lock writeLock = new ReentrantLock();
+        private volatile boolean closed;
+
+        Subscriber(Channel channel, SseEmitter emitter) {
+            this.channel = channel;
+            this.emitter = emitter;
+            emitter.onCompletion(this::removeAfterWrite);
+            emitter.onTimeout(this::removeAfterWrite);
+            emitter.onError(error -> removeAfterWrite());
+        }
+
+        /**
+         * Only called while subscribing, before the emitter is handed back to Spring MVC. The emitter holds on
+         * to these and they are written by the request thread, so nothing is written from another thread while
+         * the request is still being dispatched: a failed write then, from a client that has already gone, can
+         * leave Tomcat's async state broken and cut off a later response on a reused connection. Replayed events
+         * also don't count against the buffer, so a reconnecting subscriber isn't dropped for catching up.
+         */
+        void replay(Set<DataWithMediaType> content) {
+            try {
+                emitter.send(content);
+            } catch (IOException e) {
+                remove();
+            }
+        }
+
+        /**
+         * Never blocks, as it is called with the channel locked: a subscriber that has fallen behind is only
+         * marked here, and its stream is completed by the delivery thread.
+         */
+        void offer(Set<DataWithMediaType> content) {
+            if(closed) {
+                return;
+            }
+            if(buffered.incrementAndGet() > bufferSize) {
+                log.debug("dropping a subscriber more than {} events behind", bufferSize);
+                dropped.set(true);
+                remove();
+                schedule();
+                return;
+            }
+            pending.add(content);
+            schedule();
+        }
+
+        private void schedule() {
+            if(scheduled.compareAndSet(false, true)) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        private void deliver() {
+            try {
+                List<Set<DataWithMediaType>> batch = new ArrayList<>();
+                Set<DataWithMediaType> content;
+                while(!closed && (content = pending.poll()) != null) {
+                    batch.add(content);
+                }
+                for (Set<DataWithMediaType> event : batch) {
+                    writeLock.lock();
+                    try {
+                        if(closed) {
+                            break;
+                        }
+                        emitter.send(event);
+                    } finally {
+                        writeLock.unlock();
+                    }
+                }
+                buffered.addAndGet(-batch.size());
+            } catch (IOException | IllegalStateException e) {
+                // the client has gone, or the stream has already been completed
+                remove();
+            } finally {
+                scheduled.set(false);
+            }
+            if(dropped.compareAndSet(true, false)) {
+                emitter.complete();
+            } else if(!closed && !pending.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void remove() {
+            closed = true;
+            channel.subscribers.remove(this);
+        }
+
+        private void removeAfterWrite() {
+            writeLock.lock();
+            try {
+                remove();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.ChangeFeedPage;
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+
+public interface ChangeFeedService {
+
+    /**
+     * Beers changed, oldest first, and beers deleted since a watermark.
+     *
+     * @param since the watermark of a previous page, or null to start from the beginning
+     * @throws guru.springframework.spring6restmvc.exception.InvalidPageTokenException when the watermark is invalid
+     */
+    ChangeFeedPage<BeerDTO> getBeerChanges(String since, Integer pageSize);
+
+    /**
+     * Customers changed, oldest first, and customers deleted since a watermark.
+     *
+     * @param since the watermark of a previous page, or null to start from the beginning
+     * @throws guru.springframework.spring6restmvc.exception.InvalidPageTokenException when the watermark is invalid
+     */
+    ChangeFeedPage<CustomerDTO> getCustomerChanges(String since, Integer pageSize);
+}
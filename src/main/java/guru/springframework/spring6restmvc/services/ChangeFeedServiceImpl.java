@@ -0,0 +1,152 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.ChangeFeedPage;
+import guru.springframework.spring6restmvc.dto.ChangeType;
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.dto.DtoBase;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.Tombstone;
+import guru.springframework.spring6restmvc.entities.Tombstone.ResourceType;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+import guru.springframework.spring6restmvc.events.CustomerChangedEvent;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.BeerSpecifications;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import guru.springframework.spring6restmvc.repositories.TombstoneRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Serves the change feeds from the (updateDate, id) indexes that keyset listing already uses, and from tombstones
+ * written in the same transaction as each delete, so a sync reads only what changed since its watermark.
+ * <p>
+ * Update dates are taken before commit, so a change can become visible after later-dated ones. The feeds
+ * therefore hold back anything newer than {@code changes.settle-time}, which must exceed the longest write
+ * transaction, so that a watermark never moves past a change that could still commit. Tombstones are kept for
+ * {@code changes.tombstone-retention}; a client whose watermark is older than that must resync in full.
+ */
+@Slf4j
+@Service
+@Timed(value = "change.feed.service", histogram = true)
+public class ChangeFeedServiceImpl implements ChangeFeedService {
+
+    private final BeerRepository beerRepository;
+    private final CustomerRepository customerRepository;
+    private final TombstoneRepository tombstoneRepository;
+    private final Duration settleTime;
+    private final Duration tombstoneRetention;
+
+    public ChangeFeedServiceImpl(BeerRepository beerRepository, CustomerRepository customerRepository,
+                                 TombstoneRepository tombstoneRepository,
+                                 @Value("${changes.settle-time:PT5S}") Duration settleTime,
+                                 @Value("${changes.tombstone-retention:P30D}") Duration tombstoneRetention) {
+        this.beerRepository = beerRepository;
+        this.customerRepository = customerRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.settleTime = settleTime;
+        this.tombstoneRetention = tombstoneRetention;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ChangeFeedPage<BeerDTO> getBeerChanges(String since, Integer pageSize) {
+        return changes(since, pageSize, ResourceType.BEER, (cursor, limit) -> {
+            Specification<Beer> specification = cursor == null
+                    ? Specification.where(null)
+                    : BeerSpecifications.after(cursor.updateDate(), cursor.id());
+            return beerRepository.findAllDtos(specification, BeerSpecifications.KEYSET_ORDER, limit);
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ChangeFeedPage<CustomerDTO> getCustomerChanges(String since, Integer pageSize) {
+        return changes(since, pageSize, ResourceType.CUSTOMER, (cursor, limit) -> cursor == null
+                ? customerRepository.findAllDtos(Limit.of(limit))
+                : customerRepository.findAllDtosAfter(cursor.updateDate(), cursor.id(), Limit.of(limit)));
+    }
+
+    /**
+     * Deletions are published inside the deleting transaction, so the tombstone commits or rolls back with the
+     * delete.
+     */
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        if(event.type() == ChangeType.DELETED) {
+            tombstoneRepository.save(Tombstone.of(ResourceType.BEER, event.beerId()));
+        }
+    }
+
+    @EventListener
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if(event.type() == ChangeType.DELETED) {
+            tombstoneRepository.save(Tombstone.of(ResourceType.CUSTOMER, event.customerId()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${changes.tombstone-purge-interval:PT1H}",
+            initialDelayString = "${changes.tombstone-purge-interval:PT1H}")
+    public void purgeTombstones() {
+        int purged = tombstoneRepository.deleteByDeletedDateBefore(LocalDateTime.now().minus(tombstoneRetention));
+        if(purged > 0) {
+            log.debug("Purged {} expired tombstones", purged);
+        }
+    }
+
+    /**
+     * Pages through changed rows and tombstones independently, each from its own cursor. A resource is never
+     * changed after its deletion, so the order between the two lists doesn't matter to a client applying them.
+     *
+     * @param rows reads changed rows in (updateDate, id) order after a cursor, or from the start when it is null
+     */
+    private <T extends DtoBase> ChangeFeedPage<T> changes(String since, Integer pageSize, ResourceType type,
+                                                          BiFunction<KeysetCursor, Integer, List<T>> rows) {
+        ChangeFeedWatermark watermark = since == null ? ChangeFeedWatermark.START : ChangeFeedWatermark.decode(since);
+        int size = KeysetPage.boundedPageSize(pageSize);
+        LocalDateTime settled = LocalDateTime.now().minus(settleTime);
+
+        // fetch one extra row to find out whether there is more; rows are in updateDate order, so any that
+        // haven't settled yet are at the end
+        List<T> changed = rows.apply(watermark.changed(), size + 1).stream()
+                .takeWhile(dto -> dto.getUpdateDate().isBefore(settled))
+                .toList();
+        boolean moreChanged = changed.size() > size;
+        changed = moreChanged ? changed.subList(0, size) : changed;
+
+        KeysetCursor deletedCursor = watermark.deleted();
+        List<Tombstone> tombstones = deletedCursor == null
+                ? tombstoneRepository.findDeletedBefore(type, settled, Limit.of(size + 1))
+                : tombstoneRepository.findDeletedAfter(type, deletedCursor.updateDate(), deletedCursor.id(), settled,
+                Limit.of(size + 1));
+        boolean moreDeleted = tombstones.size() > size;
+        tombstones = moreDeleted ? tombstones.subList(0, size) : tombstones;
+
+        KeysetCursor changedCursor = changed.isEmpty()
+                ? watermark.changed()
+                : KeysetCursor.of(changed.get(changed.size() - 1));
+        if(!tombstones.isEmpty()) {
+            Tombstone last = tombstones.get(tombstones.size() - 1);
+            deletedCursor = new KeysetCursor(last.getDeletedDate(), last.getResourceId());
+        }
+        return ChangeFeedPage.<T>builder()
+                .changed(changed)
+                .deleted(tombstones.stream().map(Tombstone::getResourceId).toList())
+                .nextWatermark(new ChangeFeedWatermark(changedCursor, deletedCursor).encode())
+                .more(moreChanged || moreDeleted)
+                .build();
+    }
+}
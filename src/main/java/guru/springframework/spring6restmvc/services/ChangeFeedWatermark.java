@@ -0,0 +1,30 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.exception.InvalidPageTokenException;
+
+/**
+ * Position reached in a change feed: the last changed resource and the last tombstone returned, each null until
+ * the first one has been. Encoded as an opaque token, like {@link KeysetCursor}.
+ */
+public record ChangeFeedWatermark(KeysetCursor changed, KeysetCursor deleted) {
+
+    public static final ChangeFeedWatermark START = new ChangeFeedWatermark(null, null);
+
+    // not in the URL safe Base64 alphabet of the cursors
+    private static final String SEPARATOR = ".";
+
+    public String encode() {
+        return (changed == null ? "" : changed.encode()) + SEPARATOR + (deleted == null ? "" : deleted.encode());
+    }
+
+    public static ChangeFeedWatermark decode(String token) {
+        int separator = token.indexOf(SEPARATOR);
+        if(separator < 0) {
+            throw new InvalidPageTokenException("Unable to decode watermark: " + token, null);
+        }
+        String changed = token.substring(0, separator);
+        String deleted = token.substring(separator + 1);
+        return new ChangeFeedWatermark(changed.isEmpty() ? null : KeysetCursor.decode(changed),
+                deleted.isEmpty() ? null : KeysetCursor.decode(deleted));
+    }
+}
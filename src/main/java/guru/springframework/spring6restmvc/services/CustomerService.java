@@ -1,21 +1,58 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
 import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.UnaryOperator;
 
 public interface CustomerService {
 
-    List<CustomerDTO> listCustomers();
+    KeysetPage<CustomerDTO> listCustomers(String pageToken, Integer pageSize);
     Optional<CustomerDTO> getCustomerById(UUID id);
 
+    /**
+     * Current version of the customer, read without loading the customer itself.
+     */
+    Optional<Integer> getCustomerVersion(UUID id);
+
     CustomerDTO saveNewCustomer(CustomerDTO customer);
 
-    Optional<CustomerDTO> update(UUID id, CustomerDTO customer);
+    /**
+     * @param expectedVersion version the customer must currently be at, or null to update whatever the version
+     * @return false when there is no customer with that id
+     * @throws guru.springframework.spring6restmvc.exception.PreconditionFailedException when the version differs
+     */
+    boolean update(UUID id, CustomerDTO customer, Integer expectedVersion);
+
+    /**
+     * Replaces every customer in the list, identified by id, in one transaction. A customer whose version
+     * differs from the stored one is reported as a conflict and left untouched.
+     */
+    BatchUpdateResult updateAll(List<CustomerDTO> customers);
 
     boolean deleteById(UUID id);
 
-    Optional<CustomerDTO> patch(UUID id, CustomerDTO customer);
+    /**
+     * @param expectedVersion version the customer must currently be at, or null to patch whatever the version
+     * @throws guru.springframework.spring6restmvc.exception.PreconditionFailedException when the version differs
+     */
+    Optional<CustomerDTO> patch(UUID id, CustomerDTO customer, Integer expectedVersion);
+
+    /**
+     * Applies an RFC 7396 merge patch. The patch is handed the customer's current state and returns the patched state.
+     * Only the columns it changes are updated, and a patch that changes nothing leaves the version alone.
+     *
+     * @param expectedVersion version the customer must currently be at, or null to patch whatever the version
+     * @throws guru.springframework.spring6restmvc.exception.PreconditionFailedException when the version differs
+     */
+    Optional<CustomerDTO> mergePatch(UUID id, UnaryOperator<CustomerDTO> patch, Integer expectedVersion);
+
+    /**
+     * Batch equivalent of {@link #patch(UUID, CustomerDTO, Integer)}, with the same version checks as {@link #updateAll(List)}.
+     */
+    BatchUpdateResult patchAll(List<CustomerDTO> customers);
 }
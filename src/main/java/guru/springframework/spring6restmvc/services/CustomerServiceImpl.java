@@ -1,79 +1,238 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.config.CachingConfig;
 import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.events.CustomerChangedEvent;
+import guru.springframework.spring6restmvc.exception.PreconditionFailedException;
 import guru.springframework.spring6restmvc.mappers.CustomerMapper;
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
+import guru.springframework.spring6restmvc.dto.ChangeType;
 import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
 import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.defaultIfEmpty;
 
 @Slf4j
 @RequiredArgsConstructor
 @Service
+@Timed(value = "customer.service", histogram = true)
+@CacheConfig(cacheNames = CachingConfig.CUSTOMER_CACHE)
 public class CustomerServiceImpl implements CustomerService {
 
     private final CustomerRepository repository;
     private final CustomerMapper mapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Optional<GroupCommitCustomerWriter> groupCommit;
 
     @Override
-    public List<CustomerDTO> listCustomers() {
-        return repository.findAll()
-                .stream()
-                .map(mapper::modelToDto)
-                .toList();
+    @Transactional(readOnly = true)
+    public KeysetPage<CustomerDTO> listCustomers(String pageToken, Integer pageSize) {
+        int size = KeysetPage.boundedPageSize(pageSize);
+        // fetch one extra row to find out whether there is a further page
+        Limit limit = Limit.of(size + 1);
+        List<CustomerDTO> customers = pageToken == null
+                ? repository.findAllDtos(limit)
+                : findAllAfter(KeysetCursor.decode(pageToken), limit);
+        boolean hasMore = customers.size() > size;
+        List<CustomerDTO> page = hasMore ? customers.subList(0, size) : customers;
+        return KeysetPage.<CustomerDTO>builder()
+                .content(page)
+                .nextPageToken(hasMore ? KeysetCursor.of(page.get(size - 1)).encode() : null)
+                .build();
+    }
+
+    private List<CustomerDTO> findAllAfter(KeysetCursor cursor, Limit limit) {
+        return repository.findAllDtosAfter(cursor.updateDate(), cursor.id(), limit);
     }
 
     @Override
+    // not read-only, so it reads the primary: a stale row from a lagging replica would stay cached
+    @Transactional
+    @Cacheable(key = "#id", unless = "#result == null")
     public Optional<CustomerDTO> getCustomerById(UUID id) {
         log.debug("retrieving customer for id: {}", id);
-        return Optional.ofNullable(mapper.modelToDto(repository.findById(id).orElse(null)));
+        return repository.findDtoById(id);
     }
 
     @Override
-    public CustomerDTO saveNewCustomer(CustomerDTO customerDTO) {
-        Customer customer = mapper.dtoToModel(customerDTO);
-        Customer saved = repository.save(customer);
-        return mapper.modelToDto(saved);
+    public Optional<Integer> getCustomerVersion(UUID id) {
+        return repository.findVersionById(id);
     }
 
     @Override
-    public Optional<CustomerDTO> update(UUID id, CustomerDTO customer) {
-        AtomicReference<Optional<CustomerDTO>> referenceToOptional = new AtomicReference<>();
-        repository.findById(id).ifPresentOrElse( existingCustomer -> {
-            existingCustomer.setName(customer.getName());
-            Customer savedCustomer = repository.save(existingCustomer);
-            referenceToOptional.set(Optional.of(mapper.modelToDto(savedCustomer)));
-        }, () -> referenceToOptional.set(Optional.empty()));
+    public CustomerDTO saveNewCustomer(CustomerDTO customerDTO) {
+        // a batch commits on its own, so a caller with a transaction of its own keeps the insert in it
+        CustomerDTO saved;
+        if(groupCommit.isPresent() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            saved = groupCommit.get().save(customerDTO);
+        } else {
+            saved = mapper.modelToDto(repository.save(newCustomer(mapper, customerDTO)));
+        }
+        eventPublisher.publishEvent(new CustomerChangedEvent(saved.getId(), ChangeType.CREATED));
+        return saved;
+    }
 
-        return referenceToOptional.get();
+    /**
+     * Clears any client supplied id and version so the customer is persisted rather than merged. Ids are always
+     * generated, so a deleted customer's id is never reused.
+     */
+    static Customer newCustomer(CustomerMapper mapper, CustomerDTO dto) {
+        Customer customer = mapper.dtoToModel(dto);
+        customer.setId(null);
+        customer.setVersion(null);
+        return customer;
     }
 
     @Override
-    public boolean deleteById(UUID id) {
-        if(repository.existsById(id)) {
-            repository.deleteById(id);
+    @Transactional
+    @CacheEvict(key = "#id")
+    public boolean update(UUID id, CustomerDTO customer, Integer expectedVersion) {
+        int updated = repository.updateById(id, expectedVersion, customer.getName(), LocalDateTime.now());
+        if(updated > 0) {
+            eventPublisher.publishEvent(new CustomerChangedEvent(id, ChangeType.UPDATED));
             return true;
         }
+        // only a missed update pays for the extra query telling a missing customer from a stale version
+        if(expectedVersion != null && repository.findVersionById(id).isPresent()) {
+            throw new PreconditionFailedException("Customer " + id + " is no longer at version " + expectedVersion);
+        }
         return false;
     }
 
     @Override
-    public Optional<CustomerDTO> patch(UUID id, CustomerDTO customer) {
-        AtomicReference<Optional<CustomerDTO>> atomicReference = new AtomicReference<>();
-        Optional<CustomerDTO> optionalCustomer = getCustomerById(id);
-        repository.findById(id).ifPresentOrElse(existingCustomer -> {
-            existingCustomer.setName(defaultIfEmpty(customer.getName(), existingCustomer.getName()));
-            Customer saved = repository.save(existingCustomer);
-            atomicReference.set(Optional.of(mapper.modelToDto(saved)));
-        }, () -> atomicReference.set(Optional.empty()));
-        return optionalCustomer;
+    @Transactional
+    @CacheEvict(key = "#id")
+    public boolean deleteById(UUID id) {
+        if(repository.bulkDeleteById(id) == 0) {
+            return false;
+        }
+        eventPublisher.publishEvent(new CustomerChangedEvent(id, ChangeType.DELETED));
+        return true;
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(key = "#id")
+    public Optional<CustomerDTO> patch(UUID id, CustomerDTO customer, Integer expectedVersion) {
+        return repository.findById(id).map(existingCustomer -> {
+            checkVersion(existingCustomer, expectedVersion);
+            Integer before = existingCustomer.getVersion();
+            applyPatch(existingCustomer, customer);
+            return flushAndMap(existingCustomer, before);
+        });
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(key = "#id")
+    public Optional<CustomerDTO> mergePatch(UUID id, UnaryOperator<CustomerDTO> patch, Integer expectedVersion) {
+        return repository.findById(id).map(existingCustomer -> {
+            checkVersion(existingCustomer, expectedVersion);
+            Integer before = existingCustomer.getVersion();
+            applyUpdate(existingCustomer, patch.apply(mapper.modelToDto(existingCustomer)));
+            return flushAndMap(existingCustomer, before);
+        });
+    }
+
+    /**
+     * Flushes the managed customer so the returned DTO carries its new version. Dirty checking leaves an
+     * unchanged customer out of the flush altogether, and then no event is published.
+     */
+    private CustomerDTO flushAndMap(Customer customer, Integer versionBefore) {
+        repository.flush();
+        publishIfChanged(customer, versionBefore);
+        return mapper.modelToDto(customer);
+    }
+
+    private void publishIfChanged(Customer customer, Integer versionBefore) {
+        if(!customer.getVersion().equals(versionBefore)) {
+            eventPublisher.publishEvent(new CustomerChangedEvent(customer.getId(), ChangeType.UPDATED));
+        }
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(allEntries = true)
+    public BatchUpdateResult updateAll(List<CustomerDTO> customers) {
+        return applyAll(customers, this::applyUpdate);
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(allEntries = true)
+    public BatchUpdateResult patchAll(List<CustomerDTO> customers) {
+        return applyAll(customers, this::applyPatch);
+    }
+
+    /**
+     * Loads every targeted customer with a single query and applies the changes to the managed entities, so
+     * the resulting UPDATEs are flushed together as a JDBC batch.
+     */
+    private BatchUpdateResult applyAll(List<CustomerDTO> customers, BiConsumer<Customer, CustomerDTO> changes) {
+        Map<UUID, Customer> existingCustomers = repository.findAllById(customers.stream().map(CustomerDTO::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+        List<UUID> updated = new ArrayList<>();
+        List<UUID> notFound = new ArrayList<>();
+        List<UUID> conflicts = new ArrayList<>();
+        Map<Customer, Integer> versionsBefore = new IdentityHashMap<>();
+        customers.forEach(customer -> {
+            Customer existingCustomer = existingCustomers.get(customer.getId());
+            if(existingCustomer == null) {
+                notFound.add(customer.getId());
+            } else if(!existingCustomer.getVersion().equals(customer.getVersion())) {
+                conflicts.add(customer.getId());
+            } else {
+                changes.accept(existingCustomer, customer);
+                updated.add(customer.getId());
+                versionsBefore.put(existingCustomer, customer.getVersion());
+            }
+        });
+        repository.flush();
+        // the version each was requested at is the one it had before the change
+        versionsBefore.forEach(this::publishIfChanged);
+        return BatchUpdateResult.builder()
+                .updated(updated)
+                .notFound(notFound)
+                .conflicts(conflicts)
+                .build();
+    }
+
+    private void checkVersion(Customer existingCustomer, Integer expectedVersion) {
+        if(expectedVersion != null && !expectedVersion.equals(existingCustomer.getVersion())) {
+            throw new PreconditionFailedException("Customer " + existingCustomer.getId() + " is no longer at version " + expectedVersion);
+        }
+    }
+
+    private void applyUpdate(Customer existingCustomer, CustomerDTO customer) {
+        existingCustomer.setName(customer.getName());
+    }
+
+    private void applyPatch(Customer existingCustomer, CustomerDTO customer) {
+        existingCustomer.setName(defaultIfEmpty(customer.getName(), existingCustomer.getName()));
     }
 }
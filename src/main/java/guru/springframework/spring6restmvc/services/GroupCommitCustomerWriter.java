@@ -0,0 +1,201 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.mappers.CustomerMapper;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues new customers from concurrent callers and inserts them together, so a burst of creates costs one
+ * transaction and one commit per batch rather than one each. A batch is written as soon as it holds
+ * {@code customer.group-commit.max-batch-size} customers, or {@code customer.group-commit.max-delay} after its
+ * first customer was queued, whichever comes first; the delay is the most a create waits for others to join.
+ * Enabled with {@code customer.group-commit.enabled=true}.
+ * <p>
+ * Each caller blocks until its batch has committed and gets its own customer back. When a batch fails, its
+ * customers are retried one per transaction, so a bad row only fails its own caller. Creates that arrive after
+ * {@link #stop()} are inserted by their caller.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "customer.group-commit.enabled", havingValue = "true")
+public class GroupCommitCustomerWriter {
+
+    // how often an idle writer checks whether it has been stopped
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private record Pending(CustomerDTO customer, CompletableFuture<CustomerDTO> saved) {
+    }
+
+    private final CustomerRepository repository;
+    private final CustomerMapper mapper;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxDelayNanos;
+    private final int maxBatchSize;
+    private final Duration stopTimeout;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer = new Thread(this::run, "customer-group-commit");
+    private volatile boolean running;
+
+    public GroupCommitCustomerWriter(CustomerRepository repository, CustomerMapper mapper,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${customer.group-commit.max-delay:PT0.005S}") Duration maxDelay,
+                                     @Value("${customer.group-commit.max-batch-size:${spring.jpa.properties.hibernate.jdbc.batch_size:50}}")
+                                     int maxBatchSize,
+                                     @Value("${customer.group-commit.stop-timeout:PT10S}") Duration stopTimeout) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.transactionTemplate = transactionTemplate;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.stopTimeout = stopTimeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer.start();
+    }
+
+    /**
+     * Writes whatever is still queued before returning. If the writer doesn't finish its batch within
+     * {@code customer.group-commit.stop-timeout}, it is interrupted and the queued creates are failed instead.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(stopTimeout.toMillis());
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if(writer.isAlive()) {
+            log.warn("customer group commit writer did not stop within {}, failing {} queued creates",
+                    stopTimeout, remaining.size());
+            writer.interrupt();
+            IllegalStateException stopped = new IllegalStateException("Customer writer has stopped");
+            remaining.forEach(pending -> pending.saved().completeExceptionally(stopped));
+        } else if(!remaining.isEmpty()) {
+            writeOrFail(remaining);
+        }
+    }
+
+    public CustomerDTO save(CustomerDTO customer) {
+        if(!running) {
+            return insert(customer);
+        }
+        Pending pending = new Pending(customer, new CompletableFuture<>());
+        queue.add(pending);
+        // stop() may have drained the queue between the check and the add; whoever removes it writes it
+        if(!running && queue.remove(pending)) {
+            return insert(customer);
+        }
+        try {
+            return pending.saved().join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while(running) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if(first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch, System.nanoTime() + maxDelayNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if(!batch.isEmpty()) {
+                writeOrFail(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Takes what has queued up meanwhile, then waits for more until the batch is full or the deadline passes.
+     */
+    private void fill(List<Pending> batch, long deadline) throws InterruptedException {
+        while(batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if(batch.size() >= maxBatchSize || remaining <= 0) {
+                return;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if(next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Fails the batch's callers if writing it throws, rather than leaving them waiting on a dead writer.
+     */
+    private void writeOrFail(List<Pending> batch) {
+        try {
+            write(batch);
+        } catch (Throwable e) {
+            log.error("group commit of {} customers failed", batch.size(), e);
+            batch.forEach(pending -> pending.saved().completeExceptionally(e));
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<CustomerDTO> saved;
+        try {
+            // the inserts go to the driver as one JDBC batch when the transaction flushes
+            saved = transactionTemplate.execute(status -> repository.saveAll(batch.stream()
+                            .map(pending -> CustomerServiceImpl.newCustomer(mapper, pending.customer()))
+                            .toList())
+                    .stream()
+                    .map(mapper::modelToDto)
+                    .toList());
+        } catch (RuntimeException e) {
+            log.warn("group commit of {} customers failed, retrying them one at a time", batch.size(), e);
+            batch.forEach(this::writeAlone);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).saved().complete(saved.get(i));
+        }
+    }
+
+    private void writeAlone(Pending pending) {
+        try {
+            pending.saved().complete(insert(pending.customer()));
+        } catch (RuntimeException e) {
+            pending.saved().completeExceptionally(e);
+        }
+    }
+
+    private CustomerDTO insert(CustomerDTO customer) {
+        Customer saved = repository.save(CustomerServiceImpl.newCustomer(mapper, customer));
+        return mapper.modelToDto(saved);
+    }
+}
@@ -0,0 +1,36 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.DtoBase;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    int MAX_KEY_LENGTH = 255;
+
+    /**
+     * The resource a create request made, or made for an earlier request with the same key.
+     *
+     * @param body what was created, or null when the request is a replay
+     */
+    record Created<T>(UUID id, String location, T body) {
+
+        public boolean replayed() {
+            return body == null;
+        }
+    }
+
+    /**
+     * Creates a resource in a collection the first time a key is used with it, and afterwards answers with what
+     * that first request created without creating anything. Concurrent requests with the same key wait for the
+     * first one and share its outcome.
+     *
+     * @param collectionPath the path of the collection, which the Location is built from
+     * @throws guru.springframework.spring6restmvc.exception.InvalidIdempotencyKeyException when the key is blank
+     * or longer than {@value #MAX_KEY_LENGTH} characters
+     */
+    <T extends DtoBase> Created<T> create(String collectionPath, String key, Supplier<T> creator);
+}
@@ -0,0 +1,156 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring6restmvc.dto.DtoBase;
+import guru.springframework.spring6restmvc.entities.IdempotencyRecord;
+import guru.springframework.spring6restmvc.exception.IdempotencyKeyInUseException;
+import guru.springframework.spring6restmvc.exception.InvalidIdempotencyKeyException;
+import guru.springframework.spring6restmvc.repositories.IdempotencyRecordRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps what each key created in a table, so retries are answered across restarts and nodes, with the most
+ * recent {@code idempotency.max-keys} held in memory so a retry doesn't read the table. Keys are remembered for
+ * at least {@code idempotency.ttl}; expired rows are purged every {@code idempotency.purge-interval}.
+ * <p>
+ * The record is inserted in the same transaction as the resource, so a resource is never created without its
+ * key being taken. When two nodes race on one key, the loser's insert fails on the primary key and rolls its
+ * resource back, and it answers with the winner's.
+ * <p>
+ * A request waits at most {@code idempotency.wait-timeout} for another with the same key, and is then answered
+ * with a 409 so the client retries later.
+ */
+@Slf4j
+@Service
+@Timed(value = "idempotency.service", histogram = true)
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private final IdempotencyRecordRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+
+    /**
+     * The first request with a key puts an incomplete future here before creating anything, and later ones with
+     * the same key wait on it rather than creating again. It is completed once the creation has committed.
+     */
+    private final Cache<String, CompletableFuture<IdempotencyRecord>> records;
+
+    public IdempotencyServiceImpl(IdempotencyRecordRepository repository, TransactionTemplate transactionTemplate,
+                                  @Value("${idempotency.ttl:PT24H}") Duration ttl,
+                                  @Value("${idempotency.max-keys:100000}") long maxKeys,
+                                  @Value("${idempotency.wait-timeout:PT10S}") Duration waitTimeout) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.records = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public <T extends DtoBase> Created<T> create(String collectionPath, String key, Supplier<T> creator) {
+        if(key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency keys must have 1 to " + MAX_KEY_LENGTH
+                    + " characters");
+        }
+        String scopedKey = collectionPath + " " + key;
+        CompletableFuture<IdempotencyRecord> pending = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> existing = records.asMap().putIfAbsent(scopedKey, pending);
+        if(existing != null) {
+            return replay(await(existing, scopedKey));
+        }
+
+        try {
+            IdempotencyRecord stored = repository.findById(scopedKey).orElse(null);
+            if(stored != null) {
+                pending.complete(stored);
+                return replay(stored);
+            }
+            IdempotencyRecord record = IdempotencyRecord.builder()
+                    .scopedKey(scopedKey)
+                    .createdDate(LocalDateTime.now())
+                    .build();
+            T body = transactionTemplate.execute(status -> {
+                T created = creator.get();
+                record.setResourceId(created.getId());
+                record.setLocation(collectionPath + "/" + created.getId());
+                repository.saveAndFlush(record);
+                return created;
+            });
+            pending.complete(record);
+            return new Created<>(record.getResourceId(), record.getLocation(), body);
+        } catch (DataIntegrityViolationException e) {
+            IdempotencyRecord winner = repository.findById(scopedKey).orElse(null);
+            if(winner == null) {
+                // the resource itself was rejected, e.g. a value too long for its column
+                throw release(scopedKey, pending, e);
+            }
+            log.debug("Idempotency key {} was taken by another node", scopedKey);
+            pending.complete(winner);
+            return replay(winner);
+        } catch (RuntimeException e) {
+            throw release(scopedKey, pending, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT1H}",
+            initialDelayString = "${idempotency.purge-interval:PT1H}")
+    public void purgeExpired() {
+        int purged = repository.deleteByCreatedDateBefore(LocalDateTime.now().minus(ttl));
+        if(purged > 0) {
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private static <T> Created<T> replay(IdempotencyRecord record) {
+        return new Created<>(record.getResourceId(), record.getLocation(), null);
+    }
+
+    /**
+     * Nothing was created, so the key stays free for a retry, and requests waiting on this one fail as it did.
+     */
+    private RuntimeException release(String scopedKey, CompletableFuture<IdempotencyRecord> pending,
+                                     RuntimeException e) {
+        records.asMap().remove(scopedKey, pending);
+        pending.completeExceptionally(e);
+        return e;
+    }
+
+    /**
+     * A request waiting on another with the same key fails as that one did.
+     */
+    private IdempotencyRecord await(CompletableFuture<IdempotencyRecord> pending, String scopedKey) {
+        try {
+            return pending.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInUseException("A request with idempotency key " + scopedKey
+                    + " is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInUseException("Interrupted waiting for idempotency key " + scopedKey);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.util.UUID;
+
+public interface InventoryService {
+
+    enum Outcome {
+        /** The delta is already reflected in the beer's quantity on hand. */
+        APPLIED,
+        /** The delta has been accepted and will be written with the next flush. */
+        QUEUED,
+        NOT_FOUND
+    }
+
+    /**
+     * Adds a signed delta to a beer's quantity on hand without a read-modify-write of the beer, so concurrent
+     * adjustments neither conflict on the version nor overwrite each other.
+     *
+     * @throws guru.springframework.spring6restmvc.exception.InsufficientStockException when the delta would take
+     * the quantity below zero
+     */
+    Outcome adjust(UUID beerId, int delta);
+}
@@ -0,0 +1,46 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.config.CachingConfig;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+import guru.springframework.spring6restmvc.exception.InsufficientStockException;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Applies every adjustment straight away as one guarded UPDATE. The row lock is only held for that statement.
+ */
+@RequiredArgsConstructor
+@Service
+@Timed(value = "inventory.service", histogram = true)
+@ConditionalOnProperty(name = "inventory.write-behind.enabled", havingValue = "false", matchIfMissing = true)
+public class InventoryServiceImpl implements InventoryService {
+
+    private final BeerRepository repository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CachingConfig.BEER_CACHE, key = "#beerId")
+    public Outcome adjust(UUID beerId, int delta) {
+        Optional<BeerChangedEvent> change = repository.adjustQuantityOnHand(beerId, delta, LocalDateTime.now());
+        if(change.isPresent()) {
+            eventPublisher.publishEvent(change.get());
+            return Outcome.APPLIED;
+        }
+        // only a rejected adjustment pays for the extra query telling a missing beer from a short one
+        if(repository.findVersionById(beerId).isPresent()) {
+            throw new InsufficientStockException("Beer " + beerId + " has too little stock for " + delta);
+        }
+        return Outcome.NOT_FOUND;
+    }
+}
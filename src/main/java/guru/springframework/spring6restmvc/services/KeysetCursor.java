@@ -0,0 +1,38 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.DtoBase;
+import guru.springframework.spring6restmvc.exception.InvalidPageTokenException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of the last row returned in a listing ordered by (updateDate, id). Encoded as an opaque,
+ * URL safe token so clients can't depend on its contents.
+ */
+public record KeysetCursor(LocalDateTime updateDate, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static KeysetCursor of(DtoBase dto) {
+        return new KeysetCursor(dto.getUpdateDate(), dto.getId());
+    }
+
+    public String encode() {
+        String raw = updateDate + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidPageTokenException("Unable to decode page token: " + token, e);
+        }
+    }
+}
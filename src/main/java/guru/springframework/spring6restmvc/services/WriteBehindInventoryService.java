@@ -0,0 +1,197 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.config.CachingConfig;
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.events.BeerChangedEvent;
+import guru.springframework.spring6restmvc.exception.InvalidInventoryAdjustmentException;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces adjustments per beer in memory and writes the net delta of every beer with one UPDATE per flush,
+ * so a burst of sales on a popular beer costs one row update rather than one each. Enabled with
+ * {@code inventory.write-behind.enabled=true}; {@code inventory.write-behind.flush-interval} sets the delay
+ * between flushes as an ISO-8601 duration.
+ * <p>
+ * The non-negative guard is applied to the net delta when it is flushed, so an oversold beer is only noticed
+ * then, and its net delta is dropped and logged. Pending deltas are lost if the process dies before a flush.
+ * <p>
+ * When the UPDATE fails, each beer is written on its own so that one bad delta, such as one that would take
+ * the quantity past the column's range, doesn't hold back the others. A delta the database rejects is dropped;
+ * one that fails for any other reason is retried up to {@code inventory.write-behind.max-attempts} times.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+@Timed(value = "inventory.service", histogram = true)
+@ConditionalOnProperty(name = "inventory.write-behind.enabled", havingValue = "true")
+public class WriteBehindInventoryService implements InventoryService {
+
+    // the deltas are passed as two parallel arrays, and each updated row comes back with its new figures
+    static final String ADJUST_SQL = "update beer b set quantity_on_hand = coalesce(b.quantity_on_hand, 0) + d.delta, "
+            + "version = b.version + 1, update_date = ? "
+            + "from unnest(?::uuid[], ?::bigint[]) d(id, delta) "
+            + "where b.id = d.id and coalesce(b.quantity_on_hand, 0) + d.delta >= 0 "
+            + "returning b.id, b.beer_style, b.quantity_on_hand, b.price, d.delta";
+
+    private final BeerRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * LongAdder stripes each counter across cells, so threads adding to the same beer don't contend on one
+     * value. Entries are kept once created, since removing one could race with an add to it; the map is
+     * bounded by the number of beers that have been adjusted.
+     */
+    private final Map<UUID, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Failed flushes per beer, cleared once its delta is written or dropped.
+     */
+    private final Map<UUID, Integer> attempts = new ConcurrentHashMap<>();
+
+    @Value("${inventory.write-behind.max-attempts:100}")
+    private int maxAttempts;
+
+    /**
+     * @throws InvalidInventoryAdjustmentException when the beer's pending delta would leave the range of an
+     * {@code int}, which the quantity on hand could never take
+     */
+    @Override
+    public Outcome adjust(UUID beerId, int delta) {
+        // only known beers get an accumulator, so unknown ids can't grow the map
+        if(!pending.containsKey(beerId) && repository.findVersionById(beerId).isEmpty()) {
+            return Outcome.NOT_FOUND;
+        }
+        LongAdder adder = pending.computeIfAbsent(beerId, id -> new LongAdder());
+        // racing adds can still overshoot, in which case the flush drops the delta
+        long total = adder.sum() + delta;
+        if(total < Integer.MIN_VALUE || total > Integer.MAX_VALUE) {
+            throw new InvalidInventoryAdjustmentException("Beer " + beerId + " has " + adder.sum()
+                    + " pending, too much to add " + delta);
+        }
+        adder.add(delta);
+        return Outcome.QUEUED;
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.write-behind.flush-interval:PT0.1S}")
+    @PreDestroy
+    public void flush() {
+        Map<UUID, Long> deltas = drain();
+        if(deltas.isEmpty()) {
+            return;
+        }
+        try {
+            List<BeerChangedEvent> changes = transactionTemplate.execute(status -> write(deltas));
+            reportRejected(deltas, changes);
+            attempts.keySet().removeAll(deltas.keySet());
+        } catch (RuntimeException e) {
+            log.warn("inventory flush of {} beers failed, writing them one at a time", deltas.size(), e);
+            deltas.forEach(this::writeOne);
+        }
+        Cache cache = cacheManager.getCache(CachingConfig.BEER_CACHE);
+        if(cache != null) {
+            deltas.keySet().forEach(cache::evict);
+        }
+    }
+
+    private void writeOne(UUID id, long delta) {
+        try {
+            List<BeerChangedEvent> changes = transactionTemplate.execute(status -> write(Map.of(id, delta)));
+            reportRejected(Map.of(id, delta), changes);
+            attempts.remove(id);
+        } catch (DataIntegrityViolationException e) {
+            // retrying can't help, so it's dropped rather than failing every flush after this one
+            attempts.remove(id);
+            log.error("dropped inventory delta {} for beer {}: rejected by the database", delta, id, e);
+        } catch (RuntimeException e) {
+            int failed = attempts.merge(id, 1, Integer::sum);
+            if(failed >= maxAttempts) {
+                attempts.remove(id);
+                log.error("dropped inventory delta {} for beer {} after {} failed flushes", delta, id, failed, e);
+                return;
+            }
+            // put the delta back so the next flush retries it
+            pending.computeIfAbsent(id, key -> new LongAdder()).add(delta);
+            log.warn("inventory delta {} for beer {} failed, will retry", delta, id, e);
+        }
+    }
+
+    /**
+     * sumThenReset swaps each cell for zero, so an add racing with the drain is counted either now or in the
+     * next flush, never lost or counted twice.
+     */
+    private Map<UUID, Long> drain() {
+        Map<UUID, Long> deltas = new LinkedHashMap<>();
+        pending.forEach((id, adder) -> {
+            long delta = adder.sumThenReset();
+            if(delta != 0) {
+                deltas.put(id, delta);
+            }
+        });
+        return deltas;
+    }
+
+    private List<BeerChangedEvent> write(Map<UUID, Long> deltas) {
+        Timestamp updateDate = Timestamp.valueOf(LocalDateTime.now());
+        List<BeerChangedEvent> changes = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ADJUST_SQL);
+            statement.setTimestamp(1, updateDate);
+            statement.setArray(2, connection.createArrayOf("uuid", deltas.keySet().toArray()));
+            statement.setArray(3, connection.createArrayOf("bigint", deltas.values().toArray()));
+            return statement;
+        }, (rs, rowNum) -> change(rs));
+        // published inside the transaction so that commit-time listeners see them
+        changes.forEach(eventPublisher::publishEvent);
+        return changes;
+    }
+
+    private static BeerChangedEvent change(ResultSet rs) throws SQLException {
+        // beer_style is mapped by ordinal
+        BeerStyle beerStyle = BeerStyle.values()[rs.getInt("beer_style")];
+        int quantityOnHand = rs.getInt("quantity_on_hand");
+        BigDecimal price = rs.getBigDecimal("price");
+        return new BeerChangedEvent(rs.getObject("id", UUID.class), beerStyle,
+                (int) (quantityOnHand - rs.getLong("delta")), price, beerStyle, quantityOnHand, price);
+    }
+
+    private void reportRejected(Map<UUID, Long> deltas, List<BeerChangedEvent> changes) {
+        Set<UUID> applied = changes.stream().map(BeerChangedEvent::beerId).collect(Collectors.toSet());
+        deltas.forEach((id, delta) -> {
+            if(!applied.contains(id)) {
+                log.warn("dropped inventory delta {} for beer {}: beer missing or stock would go below zero",
+                        delta, id);
+            }
+        });
+    }
+}
@@ -0,0 +1,10 @@
+-- Runs after Hibernate has created the schema (spring.jpa.defer-datasource-initialization), so must be idempotent.
+
+-- fuzzy beer name search, see Beer.searchByName
+create extension if not exists pg_trgm;
+create index if not exists beer_beer_name_trgm_idx on beer using gist (beer_name gist_trgm_ops);
+
+-- beer name prefix filter, see BeerSpecifications.matching; a plain index can only serve LIKE in the C collation
+create index if not exists beer_beer_name_pattern_idx on beer (beer_name varchar_pattern_ops);
+-- replaced by the index above, dropped from databases whose schema Hibernate only updates
+drop index if exists beer_beer_name_idx;
@@ -0,0 +1,57 @@
+package guru.springframework.spring6restmvc.bootstrap;
+
+import guru.springframework.spring6restmvc.entities.Beer;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class SyntheticDataTest {
+
+    @Test
+    void sameSeedAndIndexGiveTheSameRow() {
+        Beer first = new SyntheticData(42).beer(1234);
+        Beer second = new SyntheticData(42).beer(1234);
+
+        assertThat(second.getId(), is(equalTo(first.getId())));
+        assertThat(second.getBeerName(), is(equalTo(first.getBeerName())));
+        assertThat(second.getUpc(), is(equalTo(first.getUpc())));
+        assertThat(second.getPrice(), is(equalTo(first.getPrice())));
+        assertThat(second.getUpdateDate(), is(equalTo(first.getUpdateDate())));
+        assertThat(new SyntheticData(42).customer(1234).getName(),
+                is(equalTo(new SyntheticData(42).customer(1234).getName())));
+    }
+
+    @Test
+    void differentSeedsGiveDifferentIds() {
+        assertThat(new SyntheticData(1).beer(0).getId(), is(not(equalTo(new SyntheticData(2).beer(0).getId()))));
+    }
+
+    @Test
+    void generatedIdsAreUniqueVersion4Uuids() {
+        SyntheticData data = new SyntheticData(42);
+        long distinct = LongStream.range(0, 100_000).mapToObj(index -> data.beer(index).getId()).distinct().count();
+
+        assertThat(distinct, is(100_000L));
+        UUID id = data.customer(7).getId();
+        assertThat(id.version(), is(4));
+        assertThat(id.variant(), is(2));
+    }
+
+    @Test
+    void generatedBeersAreValid() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        SyntheticData data = new SyntheticData(42);
+
+        LongStream.range(0, 1_000).mapToObj(data::beer).forEach(beer -> {
+            assertThat(validator.validate(beer), is(empty()));
+            assertThat(beer.getUpc(), matchesPattern("\\d{12}"));
+            assertThat(beer.getUpdateDate(), is(greaterThanOrEqualTo(beer.getCreatedDate())));
+        });
+    }
+}
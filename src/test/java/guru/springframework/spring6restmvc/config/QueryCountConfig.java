@@ -0,0 +1,82 @@
+package guru.springframework.spring6restmvc.config;
+
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Wraps the application DataSource in a proxy that counts the statements sent to the database, per thread.
+ * A JDBC batch counts as a single statement.
+ * <p>
+ * Reset the count before exercising an endpoint and assert on it afterwards, so a change that adds round trips
+ * fails the build.
+ */
+@TestConfiguration
+public class QueryCountConfig {
+
+    public static final String DATA_SOURCE_NAME = "query-count";
+
+    @Bean
+    static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(bean instanceof DataSource dataSource) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(DATA_SOURCE_NAME)
+                            .countQuery()
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    public static void resetQueryCount() {
+        QueryCountHolder.clear();
+    }
+
+    public static QueryCount queryCount() {
+        QueryCount queryCount = QueryCountHolder.get(DATA_SOURCE_NAME);
+        return queryCount == null ? new QueryCount() : queryCount;
+    }
+
+    public static void assertSelectCount(long expected) {
+        assertStatementCount("SELECT", expected, queryCount().getSelect());
+    }
+
+    public static void assertInsertCount(long expected) {
+        assertStatementCount("INSERT", expected, queryCount().getInsert());
+    }
+
+    public static void assertUpdateCount(long expected) {
+        assertStatementCount("UPDATE", expected, queryCount().getUpdate());
+    }
+
+    public static void assertDeleteCount(long expected) {
+        assertStatementCount("DELETE", expected, queryCount().getDelete());
+    }
+
+    public static void assertTotalCount(long expected) {
+        assertStatementCount("", expected, queryCount().getTotal());
+    }
+
+    private static void assertStatementCount(String type, long expected, long actual) {
+        String statements = type.isEmpty() ? "statements" : type + " statements";
+        assertEquals(expected, actual, () -> "Expected " + expected + " " + statements + " but " + actual
+                + " were executed (" + describe(queryCount()) + ")");
+    }
+
+    private static String describe(QueryCount queryCount) {
+        return "select=" + queryCount.getSelect() + ", insert=" + queryCount.getInsert()
+                + ", update=" + queryCount.getUpdate() + ", delete=" + queryCount.getDelete()
+                + ", other=" + queryCount.getOther();
+    }
+}
@@ -0,0 +1,135 @@
+package guru.springframework.spring6restmvc.config;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.services.BeerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * The replicas are stand-ins on the test database, told apart by their connections' application_name. Their
+ * search path is an empty schema, so a query that should have gone to the primary fails on a replica.
+ */
+@SpringBootTest(properties = {
+        "replicas.pools[0].url=${spring.datasource.url}&ApplicationName=replica-1&currentSchema=replica",
+        "replicas.pools[1].url=${spring.datasource.url}&ApplicationName=replica-2&currentSchema=replica",
+        "replicas.pools[2].url=${spring.datasource.url}&ApplicationName=replica-3&currentSchema=replica",
+        "replicas.lag-query=select case current_setting('application_name') when 'replica-3' then 60"
+                + " else ${test.replica-lag:0} end",
+        "replicas.lag-check-interval=PT1H",
+        // replicas take the primary's pool settings, and cached contexts keep their pools open
+        "spring.datasource.hikari.maximum-pool-size=2"
+})
+@ActiveProfiles("test")
+class ReplicaRoutingIT {
+
+    private static final String APPLICATION_NAME = "select current_setting('application_name')";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    BeerService beerService;
+    @Autowired
+    ReadReplicaRouter router;
+
+    @BeforeEach
+    void checkLag() {
+        // the first check runs in the background, so it may not have finished yet
+        router.checkLag();
+    }
+
+    @Test
+    void readOnlyTransactionsAreSpreadOverReplicasInSync() {
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            used.add(applicationName(transactionManager, jdbcTemplate, true));
+        }
+
+        assertThat(used, containsInAnyOrder("replica-1", "replica-2"));
+    }
+
+    @Test
+    void readWriteTransactionsUseThePrimary() {
+        assertThat(applicationName(transactionManager, jdbcTemplate, false), not(startsWith("replica-")));
+    }
+
+    @Test
+    void readOnlyWorkInAReadWriteTransactionUsesThePrimary() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        String applicationName = new TransactionTemplate(transactionManager).execute(status ->
+                readOnly.execute(nested -> jdbcTemplate.queryForObject(APPLICATION_NAME, String.class)));
+
+        assertThat(applicationName, not(startsWith("replica-")));
+    }
+
+    @Test
+    void cachedBeersAreReadFromThePrimary() {
+        BeerDTO beer = beerService.saveNewBeer(BeerDTO.builder()
+                .beerName("Replicated")
+                .beerStyle(BeerStyle.STOUT)
+                .upc("replica-upc")
+                .quantityOnHand(1)
+                .price(new BigDecimal("3.50"))
+                .build());
+        try {
+            beer.setBeerName("Replicated Again");
+            beerService.update(beer.getId(), beer, null);
+
+            BeerDTO read = beerService.getBeerById(beer.getId()).orElseThrow();
+
+            assertThat(read.getVersion(), is(equalTo(beer.getVersion() + 1)));
+            assertThat(read.getBeerName(), is(equalTo("Replicated Again")));
+        } finally {
+            beerService.deleteById(beer.getId());
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "test.replica-lag=60")
+    class WhenEveryReplicaLags {
+
+        // a different context from the enclosing test's, so its own beans
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+        @Autowired
+        PlatformTransactionManager transactionManager;
+        @Autowired
+        ReadReplicaRouter router;
+
+        @BeforeEach
+        void checkLag() {
+            router.checkLag();
+        }
+
+        @Test
+        void readOnlyTransactionsUseThePrimary() {
+            assertThat(applicationName(transactionManager, jdbcTemplate, true), not(startsWith("replica-")));
+        }
+    }
+
+    private static String applicationName(PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate,
+                                          boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject(APPLICATION_NAME, String.class));
+    }
+}
@@ -1,20 +1,38 @@
 package guru.springframework.spring6restmvc.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import guru.springframework.spring6restmvc.config.CachingConfig;
+import guru.springframework.spring6restmvc.config.QueryCountConfig;
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
 import guru.springframework.spring6restmvc.dto.BeerDTO;
 import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.dto.BeerStyleStatsDTO;
+import guru.springframework.spring6restmvc.dto.InventoryAdjustmentDTO;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
 import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.exception.InsufficientStockException;
+import guru.springframework.spring6restmvc.exception.InvalidPageTokenException;
 import guru.springframework.spring6restmvc.exception.NotFoundException;
+import guru.springframework.spring6restmvc.exception.PreconditionFailedException;
 import guru.springframework.spring6restmvc.mappers.BeerMapper;
 import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.services.CatalogStatisticsService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -23,21 +41,37 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertDeleteCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertInsertCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertSelectCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertTotalCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertUpdateCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.resetQueryCount;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @ActiveProfiles({"test"})
+@Import(QueryCountConfig.class)
+@AutoConfigureObservability(tracing = false)
 class BeerControllerIT {
 
     @Autowired
@@ -50,11 +84,21 @@ class BeerControllerIT {
     private WebApplicationContext wac;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private CatalogStatisticsService statisticsService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
     private MockMvc mockMvc;
 
     @BeforeEach
     void setUp() {
         mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        // statement counts assume every read goes to the database
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
     }
 
     @Test
@@ -62,15 +106,44 @@ class BeerControllerIT {
     @Rollback
     void testDeleteById() {
         UUID idToDelete = repository.findAll().get(0).getId();
+        resetQueryCount();
         ResponseEntity<Void> responseEntity = controller.deleteById(idToDelete);
+        assertDeleteCount(1);
+        assertTotalCount(1);
         assertThat(responseEntity.getStatusCode(), is(equalTo(HttpStatus.NO_CONTENT)));
         Optional<Beer> byId = repository.findById(idToDelete);
         assertThat(byId.isPresent(), is(false));
     }
 
+    @Test
+    @Transactional
+    @Rollback
+    void testDeleteByIds() {
+        List<Beer> beers = repository.findAll();
+        List<UUID> ids = List.of(beers.get(0).getId(), beers.get(1).getId(), UUID.randomUUID());
+        long count = repository.count();
+
+        resetQueryCount();
+        ResponseEntity<Void> responseEntity = controller.deleteByIds(ids);
+
+        assertDeleteCount(1);
+        assertTotalCount(1);
+        assertThat(responseEntity.getStatusCode(), is(equalTo(HttpStatus.NO_CONTENT)));
+        assertThat(repository.count(), is(count - 2));
+    }
+
+    @Test
+    void testDeleteByIdsWhenNoneFound() {
+        resetQueryCount();
+        assertThrows(NotFoundException.class, () -> controller.deleteByIds(List.of(UUID.randomUUID())));
+        assertTotalCount(1);
+    }
+
     @Test
     void testDeleteWhenNotFound() {
+        resetQueryCount();
         assertThrows(NotFoundException.class, () -> controller.deleteById(UUID.randomUUID()));
+        assertTotalCount(1);
     }
 
     @Test
@@ -85,7 +158,11 @@ class BeerControllerIT {
                 .upc("upc1")
                 .build();
 
-        ResponseEntity<BeerDTO> beerDTOResponseEntity = controller.createBeer(dto);
+        resetQueryCount();
+        ResponseEntity<BeerDTO> beerDTOResponseEntity = controller.createBeer(dto, null);
+        repository.flush();
+        assertInsertCount(1);
+        assertTotalCount(1);
         assertThat(beerDTOResponseEntity.getStatusCode(), is(equalTo(HttpStatusCode.valueOf(201))));
         URI location = beerDTOResponseEntity.getHeaders().getLocation();
         assertThat(location, is(notNullValue()));
@@ -101,14 +178,42 @@ class BeerControllerIT {
         assertThat(repository.findAll(), hasSize(4));
     }
 
+    @Test
+    @Transactional
+    @Rollback
+    void testCreateBeersBatchesInserts() {
+        int batchSize = 50;
+        List<BeerDTO> beers = IntStream.range(0, 120)
+                .mapToObj(i -> BeerDTO.builder()
+                        .beerName("Batch Beer " + i)
+                        .beerStyle(BeerStyle.PALE_ALE)
+                        .price(BigDecimal.valueOf(2.5))
+                        .upc("batch" + i)
+                        .build())
+                .toList();
+
+        resetQueryCount();
+        ResponseEntity<List<BeerDTO>> responseEntity = controller.createBeers(beers);
+
+        assertInsertCount((long) (beers.size() + batchSize - 1) / batchSize);
+        assertTotalCount((long) (beers.size() + batchSize - 1) / batchSize);
+        assertThat(responseEntity.getStatusCode(), is(equalTo(HttpStatus.CREATED)));
+        assertThat(responseEntity.getBody(), hasSize(beers.size()));
+        assertThat(responseEntity.getBody(), everyItem(hasProperty("id", notNullValue())));
+        assertThat(repository.count(), is(123L));
+    }
+
     @Test
     @Rollback
     @Transactional
     void updateById() {
         BeerDTO beerDTO = mapper.modelToDto(repository.findAll().get(0));
         beerDTO.setBeerName(beerDTO.getBeerName() + ":Upd");
-        controller.updateById(beerDTO.getId(), beerDTO);
+        resetQueryCount();
+        controller.updateById(beerDTO.getId(), beerDTO, null);
         repository.flush();
+        assertUpdateCount(1);
+        assertTotalCount(1);
         Optional<Beer> byId = repository.findById(beerDTO.getId());
         assertThat(byId.isPresent(), is(true));
         Beer beer = byId.get();
@@ -118,9 +223,85 @@ class BeerControllerIT {
         assertThat(beer.getCreatedDate(), is(equalTo(beerDTO.getCreatedDate())));
     }
 
+    @Test
+    @Transactional
+    @Rollback
+    void testUpdateBeersBatch() {
+        List<Beer> beers = repository.findAll();
+        BeerDTO current = mapper.modelToDto(beers.get(0));
+        current.setBeerName("Batch Updated");
+        BeerDTO stale = mapper.modelToDto(beers.get(1));
+        stale.setVersion(stale.getVersion() + 1);
+        BeerDTO missing = mapper.modelToDto(beers.get(2));
+        missing.setId(UUID.randomUUID());
+
+        resetQueryCount();
+        BatchUpdateResult result = controller.updateBeers(List.of(current, stale, missing));
+
+        assertSelectCount(1);
+        assertUpdateCount(1);
+        assertTotalCount(2);
+        assertThat(result.getUpdated(), contains(current.getId()));
+        assertThat(result.getConflicts(), contains(stale.getId()));
+        assertThat(result.getNotFound(), contains(missing.getId()));
+        Beer updatedBeer = repository.findById(current.getId()).orElseThrow();
+        assertThat(updatedBeer.getBeerName(), is("Batch Updated"));
+        assertThat(updatedBeer.getVersion(), is(current.getVersion() + 1));
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void testPatchBeersBatch() {
+        int batchSize = 50;
+        // enough rows for more than one batch
+        repository.saveAllAndFlush(IntStream.range(0, 120)
+                .mapToObj(i -> Beer.builder()
+                        .beerName("Patched Beer " + i)
+                        .beerStyle(BeerStyle.LAGER)
+                        .price(BigDecimal.ONE)
+                        .upc("patch" + i)
+                        .build())
+                .toList());
+        entityManager.clear();
+        List<BeerDTO> patches = repository.findAll().stream()
+                .map(beer -> {
+                    BeerDTO dto = BeerDTO.builder().quantityOnHand(42).build();
+                    dto.setId(beer.getId());
+                    dto.setVersion(beer.getVersion());
+                    return dto;
+                })
+                .toList();
+
+        resetQueryCount();
+        BatchUpdateResult result = controller.patchBeers(patches);
+
+        assertSelectCount(1);
+        assertUpdateCount((long) (patches.size() + batchSize - 1) / batchSize);
+        assertTotalCount(1 + (long) (patches.size() + batchSize - 1) / batchSize);
+        assertThat(result.getUpdated(), hasSize(123));
+        assertThat(repository.findAll(), everyItem(hasProperty("quantityOnHand", is(42))));
+    }
+
     @Test
     void testUpdateOfNonExistentBeerThrowsException() {
-        assertThrows(NotFoundException.class, () -> controller.updateById(UUID.randomUUID(), BeerDTO.builder().build()));
+        resetQueryCount();
+        assertThrows(NotFoundException.class, () -> controller.updateById(UUID.randomUUID(), BeerDTO.builder().build(), null));
+        assertUpdateCount(1);
+        assertTotalCount(1);
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void patchWithoutChangesWritesNothing() {
+        BeerDTO dto = mapper.modelToDto(repository.findAll().get(0));
+        entityManager.clear();
+        resetQueryCount();
+        controller.patchById(dto.getId(), dto, null);
+        // dirty checking finds nothing to write
+        assertUpdateCount(0);
+        assertThat(repository.findById(dto.getId()).orElseThrow().getVersion(), is(dto.getVersion()));
     }
 
     @Test
@@ -130,8 +311,12 @@ class BeerControllerIT {
         BeerDTO dto = mapper.modelToDto(repository.findAll().get(0));
         dto.setBeerName(dto.getBeerName() + "Upd");
         dto.setQuantityOnHand(101);
-        controller.patchById(dto.getId(), dto);
-        repository.flush();
+        entityManager.clear();
+        resetQueryCount();
+        controller.patchById(dto.getId(), dto, null);
+        assertSelectCount(1);
+        assertUpdateCount(1);
+        assertTotalCount(2);
         Optional<Beer> byId = repository.findById(dto.getId());
         assertThat(byId.isPresent(), is(true));
         Beer beer = byId.get();
@@ -142,30 +327,319 @@ class BeerControllerIT {
         assertThat(beer.getUpdateDate(), is(not(equalTo(dto.getUpdateDate()))));
     }
 
+    @Test
+    @Transactional
+    @Rollback
+    void mergePatchByIdReadsOnceAndUpdatesOnce() {
+        BeerDTO dto = mapper.modelToDto(repository.findAll().get(0));
+        entityManager.clear();
+        ObjectNode patch = objectMapper.createObjectNode().put("beerName", "Merged");
+
+        resetQueryCount();
+        ResponseEntity<Void> response = controller.mergePatchById(dto.getId(), patch, null);
+
+        assertSelectCount(1);
+        assertUpdateCount(1);
+        assertTotalCount(2);
+        assertThat(response.getHeaders().getETag(), is("\"" + dto.getId() + ":" + (dto.getVersion() + 1) + "\""));
+        Beer beer = repository.findById(dto.getId()).get();
+        assertThat(beer.getBeerName(), is("Merged"));
+        assertThat(beer.getUpc(), is(dto.getUpc()));
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void mergePatchByIdWithoutChangesDoesNotUpdate() {
+        BeerDTO dto = mapper.modelToDto(repository.findAll().get(0));
+        entityManager.clear();
+        ObjectNode patch = objectMapper.createObjectNode().put("beerName", dto.getBeerName());
+
+        resetQueryCount();
+        ResponseEntity<Void> response = controller.mergePatchById(dto.getId(), patch, null);
+
+        assertSelectCount(1);
+        assertTotalCount(1);
+        assertThat(response.getHeaders().getETag(), is("\"" + dto.getId() + ":" + dto.getVersion() + "\""));
+    }
+
+    @Test
+    void testPrometheusScrapeCoversServicesMappersPoolAndHibernate() throws Exception {
+        controller.getBeerById(repository.findAll().get(0).getId(), null);
+        mapper.modelToDto(repository.findAll().get(0));
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape, containsString("beer_service_seconds_bucket{class=\"guru.springframework.spring6restmvc.services.BeerServiceImpl\""));
+        assertThat(scrape, containsString("beer_mapper_seconds_bucket"));
+        assertThat(scrape, containsString("hikaricp_connections_active"));
+        assertThat(scrape, containsString("hikaricp_connections_pending"));
+        assertThat(scrape, containsString("hikaricp_connections_acquire_seconds_bucket"));
+        assertThat(scrape, containsString("hibernate_flushes_total"));
+        assertThat(scrape, containsString("hibernate_entities_loads_total"));
+    }
+
     @Test
     void testGetBeers() {
-        List<BeerDTO> beers = controller.getBeers();
+        resetQueryCount();
+        List<BeerDTO> beers = listBeers(null, null).getBody();
+        assertSelectCount(1);
+        assertTotalCount(1);
         assertThat(beers, hasSize(3));
     }
 
+    @Test
+    void testGetBeersFilteredByNamePrefix() {
+        resetQueryCount();
+        List<BeerDTO> beers = controller.getBeers("Innis", null, null, null, null, null, null).getBody();
+        assertTotalCount(1);
+        assertThat(beers, hasSize(2));
+        assertThat(beers, everyItem(hasProperty("beerName", startsWith("Innis"))));
+    }
+
+    @Test
+    @Transactional
+    void testNamePrefixFilterCanUseAnIndex() {
+        // the table is small enough that a sequential scan would otherwise win, and the trigram index serves
+        // LIKE too, so it's dropped for this transaction only
+        jdbcTemplate.execute("set local enable_seqscan = off");
+        jdbcTemplate.execute("drop index beer_beer_name_trgm_idx");
+        List<String> plan = jdbcTemplate.queryForList(
+                "explain select * from beer where beer_name like 'Innis%' escape '\\'", String.class);
+        assertThat(String.join("\n", plan), containsString("Index Scan using beer_beer_name_pattern_idx"));
+    }
+
+    @Test
+    void testGetBeersFilteredByStyleAndPrice() {
+        resetQueryCount();
+        List<BeerDTO> stouts = controller.getBeers(null, BeerStyle.STOUT, null, null, null, null, null).getBody();
+        assertThat(stouts, hasSize(1));
+
+        List<BeerDTO> cheapLagers = controller.getBeers(null, BeerStyle.LAGER, null, BigDecimal.valueOf(4.2), null, null, null).getBody();
+        assertThat(cheapLagers, hasSize(1));
+
+        List<BeerDTO> inStock = controller.getBeers(null, null, BigDecimal.ONE, null, true, null, null).getBody();
+        assertThat(inStock, hasSize(0));
+        assertTotalCount(3);
+    }
+
+    @Test
+    void testGetBeersPagesThroughAllBeers() {
+        ResponseEntity<List<BeerDTO>> firstPage = listBeers(null, 2);
+        assertThat(firstPage.getBody(), hasSize(2));
+        String pageToken = firstPage.getHeaders().getFirst(KeysetPage.NEXT_PAGE_TOKEN_HEADER);
+        assertThat(pageToken, is(notNullValue()));
+
+        resetQueryCount();
+        ResponseEntity<List<BeerDTO>> secondPage = listBeers(pageToken, 2);
+        assertTotalCount(1);
+        assertThat(secondPage.getBody(), hasSize(1));
+        assertThat(secondPage.getHeaders().containsKey(KeysetPage.NEXT_PAGE_TOKEN_HEADER), is(false));
+        assertThat(secondPage.getBody().get(0).getId(),
+                is(not(in(firstPage.getBody().stream().map(BeerDTO::getId).toList()))));
+    }
+
+    @Test
+    void testGetBeersWithInvalidPageToken() {
+        resetQueryCount();
+        assertThrows(InvalidPageTokenException.class, () -> listBeers("not a token", null));
+        assertTotalCount(0);
+    }
+
     @Test
     @Transactional
     @Rollback
     void testGetBeersReturnsEmptyList() {
         repository.deleteAll();
-        List<BeerDTO> beers = controller.getBeers();
+        repository.flush();
+        resetQueryCount();
+        List<BeerDTO> beers = listBeers(null, null).getBody();
+        assertTotalCount(1);
         assertThat(beers, hasSize(0));
     }
 
     @Test
     void testGetBeerByIdWithIdThatExists() {
         UUID id = repository.findAll().get(0).getId();
-        BeerDTO beer = controller.getBeerById(id);
+        resetQueryCount();
+        BeerDTO beer = controller.getBeerById(id, null).getBody();
+        assertSelectCount(1);
+        assertTotalCount(1);
         assertThat(beer, is(notNullValue()));
     }
+    @Test
+    void testGetBeerByIdIsServedFromCache() {
+        UUID id = repository.findAll().get(0).getId();
+        Cache cache = cacheManager.getCache(CachingConfig.BEER_CACHE);
+
+        resetQueryCount();
+        BeerDTO first = controller.getBeerById(id, null).getBody();
+        BeerDTO second = controller.getBeerById(id, null).getBody();
+
+        assertSelectCount(1);
+        assertTotalCount(1);
+        assertThat(second.getId(), is(first.getId()));
+        assertThat(cache.get(id), is(notNullValue()));
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void testUpdateEvictsCachedBeer() {
+        BeerDTO beerDTO = controller.getBeerById(repository.findAll().get(0).getId(), null).getBody();
+        Cache cache = cacheManager.getCache(CachingConfig.BEER_CACHE);
+        assertThat(cache.get(beerDTO.getId()), is(notNullValue()));
+
+        controller.updateById(beerDTO.getId(), beerDTO, null);
+
+        assertThat(cache.get(beerDTO.getId()), is(nullValue()));
+    }
+
+    @Test
+    @Transactional
+    void testReadsDoNotLoadEntities() {
+        UUID id = repository.findAll().get(0).getId();
+        cacheManager.getCache(CachingConfig.BEER_CACHE).evict(id);
+        entityManager.clear();
+
+        List<BeerDTO> beers = listBeers(null, 50).getBody();
+        BeerDTO beer = controller.getBeerById(id, null).getBody();
+
+        assertThat(beers, is(not(empty())));
+        assertThat(beer.getId(), is(id));
+        assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount(), is(0));
+    }
+
+    @Test
+    void testGetBeerStatsRunsNoStatements() {
+        statisticsService.reconcile();
+        long beerCount = repository.count();
+
+        resetQueryCount();
+        List<BeerStyleStatsDTO> stats = controller.getBeerStats();
+
+        assertTotalCount(0);
+        assertThat(stats, hasSize(BeerStyle.values().length));
+        assertThat(stats.stream().mapToLong(BeerStyleStatsDTO::getBeerCount).sum(), is(beerCount));
+    }
+
+    @Test
+    void testGetBeerByIdNotModifiedUsesVersionQueryOnly() {
+        UUID id = repository.findAll().get(0).getId();
+        String eTag = controller.getBeerById(id, null).getHeaders().getETag();
+        cacheManager.getCache(CachingConfig.BEER_CACHE).evict(id);
+
+        resetQueryCount();
+        ResponseEntity<BeerDTO> response = controller.getBeerById(id, eTag);
+
+        assertSelectCount(1);
+        assertTotalCount(1);
+        assertThat(response.getStatusCode(), is(HttpStatus.NOT_MODIFIED));
+        assertThat(response.getHeaders().getETag(), is(eTag));
+        assertThat(cacheManager.getCache(CachingConfig.BEER_CACHE).get(id), is(nullValue()));
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void testUpdateByIdIsASingleStatement() {
+        BeerDTO beerDTO = mapper.modelToDto(repository.findAll().get(0));
+        beerDTO.setBeerName("Single Update");
+        String eTag = "\"" + beerDTO.getId() + ":" + beerDTO.getVersion() + "\"";
+
+        resetQueryCount();
+        ResponseEntity<Void> response = controller.updateById(beerDTO.getId(), beerDTO, eTag);
+
+        assertUpdateCount(1);
+        assertTotalCount(1);
+        assertThat(response.getHeaders().getETag(), is("\"" + beerDTO.getId() + ":" + (beerDTO.getVersion() + 1) + "\""));
+        assertThat(repository.findById(beerDTO.getId()).get().getBeerName(), is("Single Update"));
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void testUpdateByIdWithStaleIfMatch() {
+        BeerDTO beerDTO = mapper.modelToDto(repository.findAll().get(0));
+        String staleETag = "\"" + beerDTO.getId() + ":" + (beerDTO.getVersion() + 1) + "\"";
+
+        resetQueryCount();
+        assertThrows(PreconditionFailedException.class,
+                () -> controller.updateById(beerDTO.getId(), beerDTO, staleETag));
+        assertUpdateCount(1);
+        assertSelectCount(1);
+        assertTotalCount(2);
+    }
+
     @Test
     void testGetBeerByIdWithAnIdThatDoesNotExist() {
-        assertThrows(NotFoundException.class, () -> controller.getBeerById(UUID.randomUUID()));
+        resetQueryCount();
+        assertThrows(NotFoundException.class, () -> controller.getBeerById(UUID.randomUUID(), null));
+        assertTotalCount(1);
+    }
+
+    @Test
+    void testExportBeersWritesOneLinePerBeer() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get(BeerController.BEER_EXPORT_PATH)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvcResult = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String[] lines = mvcResult.getResponse().getContentAsString().split("\n");
+        assertThat(lines.length, is((int) repository.count()));
+        assertThat(objectMapper.readValue(lines[0], BeerDTO.class).getBeerName(), is(notNullValue()));
+    }
+
+    @Test
+    void testSearchBeersWithMisspeltName() {
+        resetQueryCount();
+        List<BeerDTO> beers = controller.searchBeers("guiness", null);
+
+        assertSelectCount(1);
+        assertTotalCount(1);
+        assertThat(beers, hasSize(1));
+        assertThat(beers.get(0).getBeerName(), is("Guinness"));
+        assertThat(beers.get(0).getBeerStyle(), is(BeerStyle.STOUT));
+    }
+
+    @Test
+    void testSearchBeersWithPartialWords() {
+        resetQueryCount();
+        List<BeerDTO> beers = controller.searchBeers("innis gun", null);
+        assertSelectCount(1);
+        assertTotalCount(1);
+        assertThat(beers, hasSize(2));
+        assertThat(beers, everyItem(hasProperty("beerName", is("InnisAndGunn"))));
+    }
+
+    @Test
+    void testSearchBeersIsLimited() {
+        resetQueryCount();
+        assertThat(controller.searchBeers("innis", 1), hasSize(1));
+        assertSelectCount(1);
+        assertTotalCount(1);
+    }
+
+    @Test
+    void testSearchBeersWithNoMatch() {
+        resetQueryCount();
+        assertThat(controller.searchBeers("zzzz", null), is(empty()));
+        assertSelectCount(1);
+        assertTotalCount(1);
+    }
+
+    @Test
+    void testExportBeersIsASingleQuery() throws Exception {
+        // the streaming body normally runs on an async thread, write it here so this thread's counts see it
+        resetQueryCount();
+        controller.exportBeers().getBody().writeTo(new ByteArrayOutputStream());
+        assertSelectCount(1);
+        assertTotalCount(1);
     }
 
     @Test
@@ -174,6 +648,7 @@ class BeerControllerIT {
         dto.setBeerName(dto.getBeerName() + "Updated too long");
         dto.setQuantityOnHand(101);
 
+        resetQueryCount();
         MvcResult mvcResult = mockMvc.perform(patch(BeerController.BEER_PATH_WITH_ID, dto.getId())
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -181,8 +656,78 @@ class BeerControllerIT {
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.length()", is(equalTo(1))))
                 .andReturn();
+        assertSelectCount(1);
+        assertTotalCount(1);
         System.out.println(mvcResult.getResponse().getContentAsString());
     }
 
+    private ResponseEntity<List<BeerDTO>> listBeers(String pageToken, Integer pageSize) {
+        return controller.getBeers(null, null, null, null, null, pageToken, pageSize);
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void testAdjustInventory() {
+        Beer beer = repository.findAll().get(0);
+        int quantity = beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand();
+
+        resetQueryCount();
+        ResponseEntity<Void> received = controller.adjustInventory(beer.getId(), new InventoryAdjustmentDTO(10));
+        ResponseEntity<Void> sold = controller.adjustInventory(beer.getId(), new InventoryAdjustmentDTO(-4));
 
-}
\ No newline at end of file
+        assertUpdateCount(2);
+        assertTotalCount(2);
+        assertThat(received.getStatusCode(), is(HttpStatus.NO_CONTENT));
+        assertThat(sold.getStatusCode(), is(HttpStatus.NO_CONTENT));
+        Beer adjusted = repository.findById(beer.getId()).orElseThrow();
+        assertThat(adjusted.getQuantityOnHand(), is(quantity + 6));
+        assertThat(adjusted.getVersion(), is(beer.getVersion() + 2));
+    }
+
+    @Test
+    @Transactional
+    @Rollback
+    void testAdjustInventoryBelowZero() {
+        Beer beer = repository.findAll().get(0);
+        int quantity = beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand();
+
+        resetQueryCount();
+        assertThrows(InsufficientStockException.class,
+                () -> controller.adjustInventory(beer.getId(), new InventoryAdjustmentDTO(-(quantity + 1))));
+
+        assertUpdateCount(1);
+        assertSelectCount(1);
+        assertTotalCount(2);
+    }
+
+    @Test
+    void testAdjustInventoryOfNonExistentBeer() {
+        resetQueryCount();
+        assertThrows(NotFoundException.class,
+                () -> controller.adjustInventory(UUID.randomUUID(), new InventoryAdjustmentDTO(1)));
+        assertUpdateCount(1);
+        assertTotalCount(2);
+    }
+
+    @Test
+    void testConcurrentInventoryAdjustmentsAreNotLost() throws Exception {
+        UUID id = repository.findAll().get(0).getId();
+        int threads = 8;
+        int adjustmentsPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = IntStream.range(0, threads)
+                    .<Future<?>>mapToObj(thread -> executor.submit(() -> IntStream.range(0, adjustmentsPerThread)
+                            .forEach(i -> controller.adjustInventory(id, new InventoryAdjustmentDTO(1)))))
+                    .toList();
+            for (Future<?> result : results) {
+                result.get();
+            }
+            assertThat(repository.findById(id).orElseThrow().getQuantityOnHand(), is(threads * adjustmentsPerThread));
+        } finally {
+            executor.shutdown();
+            controller.adjustInventory(id, new InventoryAdjustmentDTO(-threads * adjustmentsPerThread));
+        }
+    }
+}
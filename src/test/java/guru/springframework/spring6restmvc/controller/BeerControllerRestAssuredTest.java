@@ -1,14 +1,19 @@
 package guru.springframework.spring6restmvc.controller;
 
 import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
 import io.restassured.http.ContentType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.ActiveProfiles;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsStringIgnoringCase;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles({"test"})
@@ -32,4 +37,26 @@ public class BeerControllerRestAssuredTest {
                 .assertThat().statusCode(200);
     }
 
+    @Test
+    void testJsonResponsesAreGzipped() {
+        // Jackson streams the body without a length, so Tomcat can't tell it is under the threshold
+        given().header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .when()
+                .get(BeerController.BEER_PATH)
+                .then()
+                .assertThat().statusCode(200)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .header(HttpHeaders.VARY, containsStringIgnoringCase(HttpHeaders.ACCEPT_ENCODING))
+                .body("size()", greaterThan(0));
+    }
+
+    @Test
+    void testResponsesAreNotCompressedUnlessAccepted() {
+        given().config(RestAssured.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .when()
+                .get(BeerController.BEER_PATH)
+                .then()
+                .assertThat().statusCode(200)
+                .header(HttpHeaders.CONTENT_ENCODING, nullValue());
+    }
 }
@@ -2,30 +2,55 @@ package guru.springframework.spring6restmvc.controller;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.config.DtoProtobufHttpMessageConverter;
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
 import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerFilter;
 import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.dto.BeerStyleStatsDTO;
+import guru.springframework.spring6restmvc.dto.ChangeFeedPage;
 import guru.springframework.spring6restmvc.dto.ErrorInfo;
+import guru.springframework.spring6restmvc.dto.InventoryAdjustmentDTO;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
+import guru.springframework.spring6restmvc.exception.InsufficientStockException;
+import guru.springframework.spring6restmvc.exception.InvalidIdempotencyKeyException;
 import guru.springframework.spring6restmvc.services.BeerService;
+import guru.springframework.spring6restmvc.services.CatalogStatisticsService;
+import guru.springframework.spring6restmvc.services.ChangeEventService;
+import guru.springframework.spring6restmvc.services.ChangeFeedService;
+import guru.springframework.spring6restmvc.services.IdempotencyService;
+import guru.springframework.spring6restmvc.services.InventoryService;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -34,6 +59,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 class BeerControllerTest {
 
     public static final String MUST_NOT_BE_BLANK = "must not be blank";
+    public static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
     public static final String MUST_NOT_BE_NULL = "must not be null";
     @Autowired
     MockMvc mockMvc;
@@ -44,8 +70,25 @@ class BeerControllerTest {
     @MockBean
     BeerService service;
 
+    @MockBean
+    InventoryService inventoryService;
+
+    @MockBean
+    CatalogStatisticsService catalogStatisticsService;
+
+    @MockBean
+    IdempotencyService idempotencyService;
+
+    @MockBean
+    ChangeFeedService changeFeedService;
+
+    @MockBean
+    ChangeEventService changeEventService;
+
     @Captor
     ArgumentCaptor<UUID> uuidArgumentCaptor;
+    @Captor
+    ArgumentCaptor<BeerFilter> filterArgumentCaptor;
 //    @Captor
 //    ArgumentCaptor<BeerDTO> beerArgumentCaptor;
 
@@ -59,7 +102,37 @@ class BeerControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id", is(beer.getId().toString())))
-                .andExpect(jsonPath("$.beerName", is(beer.getBeerName())));
+                .andExpect(jsonPath("$.beerName", is(beer.getBeerName())))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + beer.getId() + ":0\""));
+    }
+
+    @Test
+    void getBeerByIdNotModified() throws Exception {
+        UUID id = UUID.randomUUID();
+        given(service.getBeerVersion(id)).willReturn(Optional.of(3));
+
+        mockMvc.perform(get(BeerController.BEER_PATH_WITH_ID, id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + id + ":3\"")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + id + ":3\""))
+                .andExpect(content().string(""));
+        verify(service, never()).getBeerById(any());
+    }
+
+    @Test
+    void getBeerByIdModifiedSinceETag() throws Exception {
+        BeerDTO beer = createBeer("test Beer");
+        beer.setVersion(4);
+        given(service.getBeerVersion(beer.getId())).willReturn(Optional.of(4));
+        given(service.getBeerById(beer.getId())).willReturn(Optional.of(beer));
+
+        mockMvc.perform(get(BeerController.BEER_PATH_WITH_ID, beer.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + beer.getId() + ":3\"")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + beer.getId() + ":4\""))
+                .andExpect(jsonPath("$.version", is(4)));
     }
 
     @Test
@@ -76,6 +149,38 @@ class BeerControllerTest {
                 .andExpect(jsonPath("$.beerName", is(beer.getBeerName())));
     }
 
+    @Test
+    void testCreateNewBeerWithIdempotencyKeyIsReplayed() throws Exception {
+        BeerDTO beer = createBeer("Innis & Gunn");
+        String location = BeerController.BEER_PATH + "/" + beer.getId();
+        given(idempotencyService.<BeerDTO>create(eq(BeerController.BEER_PATH), eq("order-42"), any()))
+                .willReturn(new IdempotencyService.Created<>(beer.getId(), location, null));
+        given(service.getBeerById(beer.getId())).willReturn(Optional.of(beer));
+
+        mockMvc.perform(post(BeerController.BEER_PATH)
+                .header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, "order-42")
+                .content(mapper.writeValueAsBytes(beer))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, location))
+                .andExpect(header().string(IdempotencyService.IDEMPOTENT_REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.id", is(beer.getId().toString())));
+        verify(service, never()).saveNewBeer(any());
+    }
+
+    @Test
+    void testCreateNewBeerWithInvalidIdempotencyKey() throws Exception {
+        given(idempotencyService.create(any(), any(), any())).willThrow(new InvalidIdempotencyKeyException());
+
+        mockMvc.perform(post(BeerController.BEER_PATH)
+                .header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, " ")
+                .content(mapper.writeValueAsBytes(createBeer("Innis & Gunn")))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testCreateNewBeerWithNoBeerName() throws Exception {
         BeerDTO beer = createBeer(null);
@@ -129,30 +234,305 @@ class BeerControllerTest {
         verify(service).deleteById(id);
     }
 
+    @Test
+    void deleteByIds() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        given(service.deleteAllById(List.of(first, second))).willReturn(2);
+        mockMvc.perform(delete(BeerController.BEER_PATH)
+                .param("ids", first.toString(), second.toString()))
+                .andExpect(status().isNoContent());
+        verify(service).deleteAllById(List.of(first, second));
+    }
+
+    @Test
+    void deleteByIdsNoneFound() throws Exception {
+        given(service.deleteAllById(any())).willReturn(0);
+        mockMvc.perform(delete(BeerController.BEER_PATH)
+                .param("ids", UUID.randomUUID().toString()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testCreateBeersBatch() throws Exception {
+        List<BeerDTO> beers = List.of(createBeer("Beer 1"), createBeer("Beer 2"));
+        given(service.saveNewBeers(any())).willReturn(beers);
+        mockMvc.perform(post(BeerController.BEER_BATCH_PATH)
+                .content(mapper.writeValueAsBytes(beers))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$.[1].id", is(beers.get(1).getId().toString())));
+    }
+
+    @Test
+    void testCreateBeersBatchReportsErrorsByIndex() throws Exception {
+        BeerDTO invalidBeer = createBeer("Beer 2");
+        invalidBeer.setPrice(null);
+        List<BeerDTO> beers = List.of(createBeer("Beer 1"), invalidBeer, createBeer(null));
+        mockMvc.perform(post(BeerController.BEER_BATCH_PATH)
+                .content(mapper.writeValueAsBytes(beers))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$.[*].fieldName", containsInAnyOrder("[1].price", "[2].beerName")));
+        verify(service, never()).saveNewBeers(any());
+    }
+
+    @Test
+    void testUpdateBeersBatch() throws Exception {
+        BeerDTO beer1 = createBeer("Beer 1");
+        BeerDTO beer2 = createBeer("Beer 2");
+        UUID missingId = UUID.randomUUID();
+        given(service.updateAll(any())).willReturn(BatchUpdateResult.builder()
+                .updated(List.of(beer1.getId()))
+                .notFound(List.of(missingId))
+                .conflicts(List.of(beer2.getId()))
+                .build());
+        mockMvc.perform(put(BeerController.BEER_BATCH_PATH)
+                .content(mapper.writeValueAsBytes(List.of(beer1, beer2)))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated[0]", is(beer1.getId().toString())))
+                .andExpect(jsonPath("$.notFound[0]", is(missingId.toString())))
+                .andExpect(jsonPath("$.conflicts[0]", is(beer2.getId().toString())));
+    }
+
+    @Test
+    void testPatchBeersBatchRequiresIds() throws Exception {
+        BeerDTO beer = BeerDTO.builder().beerName("new name").build();
+        mockMvc.perform(patch(BeerController.BEER_BATCH_PATH)
+                .content(mapper.writeValueAsBytes(List.of(beer)))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.[0].fieldName", is("[0].id")));
+        verify(service, never()).patchAll(any());
+    }
+
+    @Test
+    void testUpdateBeersBatchRequiresVersions() throws Exception {
+        BeerDTO beer = createBeer("Beer 1");
+        beer.setVersion(null);
+        mockMvc.perform(put(BeerController.BEER_BATCH_PATH)
+                .content(mapper.writeValueAsBytes(List.of(beer)))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.[0].fieldName", is("[0].version")));
+        verify(service, never()).updateAll(any());
+    }
+
+    @Test
+    void testPatchBeersBatchRejectsDuplicateIds() throws Exception {
+        BeerDTO beer = createBeer("Beer 1");
+        BeerDTO withoutVersion = createBeer("Beer 2");
+        withoutVersion.setVersion(null);
+        mockMvc.perform(patch(BeerController.BEER_BATCH_PATH)
+                .content(mapper.writeValueAsBytes(List.of(beer, withoutVersion, beer)))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.[*].fieldName", containsInAnyOrder("[1].version", "[2].id")))
+                .andExpect(jsonPath("$.[?(@.fieldName == '[2].id')].errorDescription", contains("duplicates [0].id")));
+        verify(service, never()).patchAll(any());
+    }
+
     @Test
     void updateById() throws Exception {
         BeerDTO beer = createBeer("test Beer");
-        given(service.update(any(UUID.class), any(BeerDTO.class))).willReturn(Optional.of(beer));
+        given(service.update(any(UUID.class), any(BeerDTO.class), any())).willReturn(true);
         mockMvc.perform(put(BeerController.BEER_PATH_WITH_ID, beer.getId())
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(beer)))
                 .andExpect(status().isNoContent());
-        verify(service).update(any(UUID.class), any(BeerDTO.class));
+        verify(service).update(any(UUID.class), any(BeerDTO.class), any());
+    }
+
+    @Test
+    void updateByIdIfMatch() throws Exception {
+        BeerDTO beer = createBeer("test Beer");
+        given(service.update(eq(beer.getId()), any(BeerDTO.class), eq(2))).willReturn(true);
+        mockMvc.perform(put(BeerController.BEER_PATH_WITH_ID, beer.getId())
+                .header(HttpHeaders.IF_MATCH, "\"" + beer.getId() + ":2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(beer)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + beer.getId() + ":3\""));
+        verify(service).update(eq(beer.getId()), any(BeerDTO.class), eq(2));
+    }
+
+    @Test
+    void updateByIdIfMatchForAnotherBeer() throws Exception {
+        BeerDTO beer = createBeer("test Beer");
+        mockMvc.perform(put(BeerController.BEER_PATH_WITH_ID, beer.getId())
+                .header(HttpHeaders.IF_MATCH, "\"" + UUID.randomUUID() + ":2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(beer)))
+                .andExpect(status().isPreconditionFailed());
+        verify(service, never()).update(any(), any(), any());
     }
 
     @Test
     void patchById() throws Exception {
         BeerDTO beer = BeerDTO.builder().beerName("new name").build();
         UUID id = UUID.randomUUID();
-        given(service.patch(eq(id), any(BeerDTO.class))).willReturn(Optional.of(beer));
+        given(service.patch(eq(id), any(BeerDTO.class), any())).willReturn(Optional.of(beer));
 
         mockMvc.perform(patch(BeerController.BEER_PATH_WITH_ID, id)
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(beer)))
                 .andExpect(status().isNoContent());
-        verify(service).patch(eq(id), any(BeerDTO.class));
+        verify(service).patch(eq(id), any(BeerDTO.class), any());
+    }
+
+    @Test
+    void searchBeers() throws Exception {
+        BeerDTO beer = createBeer("Guinness");
+        given(service.searchBeers("guiness", 5)).willReturn(List.of(beer));
+
+        mockMvc.perform(get(BeerController.BEER_SEARCH_PATH)
+                .queryParam("q", " guiness ")
+                .queryParam("limit", "5")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].beerName", is("Guinness")));
+    }
+
+    @Test
+    void searchBeersWithBlankQuery() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_SEARCH_PATH)
+                .queryParam("q", " ")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        verify(service, never()).searchBeers(any(), any());
+    }
+
+    @Test
+    void getBeerStats() throws Exception {
+        given(catalogStatisticsService.getStats()).willReturn(List.of(
+                new BeerStyleStatsDTO(BeerStyle.LAGER, 2, 10, new BigDecimal("8.60")),
+                new BeerStyleStatsDTO(BeerStyle.IPA, 0, 0, BigDecimal.ZERO)));
+
+        mockMvc.perform(get(BeerController.BEER_STATS_PATH)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[0].beerStyle", is("LAGER")))
+                .andExpect(jsonPath("$[0].beerCount", is(2)))
+                .andExpect(jsonPath("$[0].totalQuantityOnHand", is(10)))
+                .andExpect(jsonPath("$[0].averagePrice", is(4.30)))
+                .andExpect(jsonPath("$[1].averagePrice", is(nullValue())));
+        verify(service, never()).listBeers(any(), any(), any());
+    }
+
+    @Test
+    void getBeerChanges() throws Exception {
+        BeerDTO changed = createBeer("Changed");
+        UUID deleted = UUID.randomUUID();
+        given(changeFeedService.getBeerChanges("watermark", 10)).willReturn(ChangeFeedPage.<BeerDTO>builder()
+                .changed(List.of(changed))
+                .deleted(List.of(deleted))
+                .nextWatermark("next")
+                .more(true)
+                .build());
+
+        mockMvc.perform(get(BeerController.BEER_CHANGES_PATH)
+                .queryParam("since", "watermark")
+                .queryParam("pageSize", "10")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed[0].id", is(changed.getId().toString())))
+                .andExpect(jsonPath("$.deleted[0]", is(deleted.toString())))
+                .andExpect(jsonPath("$.nextWatermark", is("next")))
+                .andExpect(jsonPath("$.more", is(true)));
+    }
+
+    @Test
+    void adjustInventory() throws Exception {
+        UUID id = UUID.randomUUID();
+        given(inventoryService.adjust(id, -2)).willReturn(InventoryService.Outcome.APPLIED);
+
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new InventoryAdjustmentDTO(-2))))
+                .andExpect(status().isNoContent());
+        verify(inventoryService).adjust(id, -2);
+    }
+
+    @Test
+    void adjustInventoryQueued() throws Exception {
+        UUID id = UUID.randomUUID();
+        given(inventoryService.adjust(id, 24)).willReturn(InventoryService.Outcome.QUEUED);
+
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new InventoryAdjustmentDTO(24))))
+                .andExpect(status().isAccepted());
+    }
+
+    @Test
+    void adjustInventoryNotFound() throws Exception {
+        given(inventoryService.adjust(any(UUID.class), eq(1))).willReturn(InventoryService.Outcome.NOT_FOUND);
+
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, UUID.randomUUID())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new InventoryAdjustmentDTO(1))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void adjustInventoryWithInsufficientStock() throws Exception {
+        given(inventoryService.adjust(any(UUID.class), eq(-5))).willThrow(new InsufficientStockException());
+
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, UUID.randomUUID())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new InventoryAdjustmentDTO(-5))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void adjustInventoryWithoutDelta() throws Exception {
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, UUID.randomUUID())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest());
+        verify(inventoryService, never()).adjust(any(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mergePatchById() throws Exception {
+        BeerDTO beer = createBeer("test Beer");
+        ArgumentCaptor<UnaryOperator<BeerDTO>> patchCaptor = ArgumentCaptor.forClass(UnaryOperator.class);
+        given(service.mergePatch(eq(beer.getId()), patchCaptor.capture(), any())).willReturn(Optional.of(beer));
+
+        mockMvc.perform(patch(BeerController.BEER_PATH_WITH_ID, beer.getId())
+                .contentType(MergePatches.MEDIA_TYPE)
+                .content("{\"beerName\": \"Merged\", \"quantityOnHand\": null}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + beer.getId() + ":0\""));
+
+        BeerDTO patched = patchCaptor.getValue().apply(createBeer("test Beer"));
+        assertThat(patched.getBeerName(), is("Merged"));
+        assertThat(patched.getQuantityOnHand(), is(nullValue()));
+        assertThat(patched.getUpc(), is("this is a upc"));
+        verify(service, never()).patch(any(), any(), any());
+    }
+
+    @Test
+    void mergePatchByIdRejectsNonObjectPatch() throws Exception {
+        mockMvc.perform(patch(BeerController.BEER_PATH_WITH_ID, UUID.randomUUID())
+                .contentType(MergePatches.MEDIA_TYPE)
+                .content("[\"beerName\"]"))
+                .andExpect(status().isBadRequest());
+        verify(service, never()).mergePatch(any(), any(), any());
     }
 
     @Test
@@ -161,12 +541,15 @@ class BeerControllerTest {
         BeerDTO beer2 = createBeer("test Beer 2");
         BeerDTO beer3 = createBeer("test Beer 3");
 
-        given(service.listBeers()).willReturn(List.of(beer1, beer2, beer3));
+        given(service.listBeers(any(), any(), any())).willReturn(KeysetPage.<BeerDTO>builder()
+                .content(List.of(beer1, beer2, beer3))
+                .build());
 
         mockMvc.perform(get(BeerController.BEER_PATH)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().doesNotExist(KeysetPage.NEXT_PAGE_TOKEN_HEADER))
                 .andExpect(jsonPath("$.length()", is(3)))
                 .andExpect(jsonPath("$.[0].id", is(beer1.getId().toString())))
                 .andExpect(jsonPath("$.[1].id", is(beer2.getId().toString())))
@@ -174,6 +557,74 @@ class BeerControllerTest {
         ;
     }
 
+    @Test
+    void getBeersWithPageToken() throws Exception {
+        BeerDTO beer = createBeer("test Beer 1");
+        given(service.listBeers(any(BeerFilter.class), eq("token1"), eq(1))).willReturn(KeysetPage.<BeerDTO>builder()
+                .content(List.of(beer))
+                .nextPageToken("token2")
+                .build());
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                .queryParam("pageToken", "token1")
+                .queryParam("pageSize", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetPage.NEXT_PAGE_TOKEN_HEADER, "token2"))
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$.[0].id", is(beer.getId().toString())));
+    }
+
+    @Test
+    void getBeersWithFilter() throws Exception {
+        given(service.listBeers(any(), any(), any())).willReturn(KeysetPage.<BeerDTO>builder()
+                .content(List.of())
+                .build());
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                .queryParam("beerName", "Innis")
+                .queryParam("beerStyle", BeerStyle.LAGER.name())
+                .queryParam("minPrice", "1.50")
+                .queryParam("maxPrice", "5")
+                .queryParam("inStock", "true")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(service).listBeers(filterArgumentCaptor.capture(), eq(null), eq(null));
+        BeerFilter filter = filterArgumentCaptor.getValue();
+        assertThat(filter.getBeerName(), is("Innis"));
+        assertThat(filter.getBeerStyle(), is(BeerStyle.LAGER));
+        assertThat(filter.getMinPrice(), is(new BigDecimal("1.50")));
+        assertThat(filter.getMaxPrice(), is(new BigDecimal("5")));
+        assertThat(filter.getInStock(), is(true));
+    }
+
+    @Test
+    void exportBeers() throws Exception {
+        BeerDTO beer1 = createBeer("test Beer 1");
+        BeerDTO beer2 = createBeer("test Beer 2");
+        willAnswer(invocation -> {
+            Consumer<BeerDTO> consumer = invocation.getArgument(0);
+            consumer.accept(beer1);
+            consumer.accept(beer2);
+            return null;
+        }).given(service).exportBeers(any());
+
+        MvcResult mvcResult = mockMvc.perform(get(BeerController.BEER_EXPORT_PATH)
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvcResult = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        String[] lines = mvcResult.getResponse().getContentAsString().split("\n");
+        assertThat(lines.length, is(2));
+        assertThat(mapper.readValue(lines[0], BeerDTO.class).getId(), is(beer1.getId()));
+        assertThat(mapper.readValue(lines[1], BeerDTO.class).getId(), is(beer2.getId()));
+    }
+
     @Test
     void getBeerByIdNotFound() throws Exception {
         given(service.getBeerById(any(UUID.class)))
@@ -185,7 +636,7 @@ class BeerControllerTest {
     @Test
     void updateBeerByIdNotFound() throws Exception {
         BeerDTO beer = BeerDTO.builder().beerName("new name").build();
-        given(service.update(beer.getId(), beer)).willReturn(Optional.empty());
+        given(service.update(beer.getId(), beer, null)).willReturn(false);
         mockMvc.perform(put(BeerController.BEER_PATH_WITH_ID, beer.getId())
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -197,14 +648,112 @@ class BeerControllerTest {
     void patchByIdNotFound() throws Exception {
         BeerDTO beer = BeerDTO.builder().beerName("new name").build();
         UUID id = UUID.randomUUID();
-        given(service.patch(eq(id), any(BeerDTO.class))).willReturn(Optional.empty());
+        given(service.patch(eq(id), any(BeerDTO.class), any())).willReturn(Optional.empty());
 
         mockMvc.perform(patch(BeerController.BEER_PATH_WITH_ID, id)
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(beer)))
                 .andExpect(status().isNotFound());
-        verify(service).patch(eq(id), any(BeerDTO.class));
+        verify(service).patch(eq(id), any(BeerDTO.class), any());
+    }
+
+    @Test
+    void getBeerByIdAsCbor() throws Exception {
+        BeerDTO beer = createBeer("test Beer");
+        given(service.getBeerById(beer.getId())).willReturn(Optional.of(beer));
+
+        MvcResult result = mockMvc.perform(get(BeerController.BEER_PATH_WITH_ID, beer.getId())
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        BeerDTO read = Jackson2ObjectMapperBuilder.cbor().build()
+                .readValue(result.getResponse().getContentAsByteArray(), BeerDTO.class);
+        assertThat(read.getId(), is(beer.getId()));
+        assertThat(read.getPrice(), is(beer.getPrice()));
+        assertThat(read.getCreatedDate(), is(beer.getCreatedDate()));
+    }
+
+    @Test
+    void testCreateNewBeerFromSmile() throws Exception {
+        BeerDTO beer = createBeer("Innis & Gunn");
+        given(service.saveNewBeer(any(BeerDTO.class))).willReturn(beer);
+
+        mockMvc.perform(post(BeerController.BEER_PATH)
+                .content(Jackson2ObjectMapperBuilder.smile().build().writeValueAsBytes(beer))
+                .contentType(SMILE)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.beerName", is(beer.getBeerName())));
+        verify(service).saveNewBeer(argThat(saved -> saved.getBeerName().equals("Innis & Gunn")
+                && saved.getPrice().equals(beer.getPrice())));
+    }
+
+    @Test
+    void getBeersAsProtobuf() throws Exception {
+        BeerDTO beer1 = createBeer("test Beer 1");
+        BeerDTO beer2 = createBeer("test Beer 2");
+        beer2.setQuantityOnHand(null);
+        given(service.listBeers(any(), any(), any())).willReturn(KeysetPage.<BeerDTO>builder()
+                .content(List.of(beer1, beer2))
+                .build());
+
+        MvcResult result = mockMvc.perform(get(BeerController.BEER_PATH)
+                .accept(DtoProtobufHttpMessageConverter.APPLICATION_PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(DtoProtobufHttpMessageConverter.APPLICATION_PROTOBUF))
+                .andReturn();
+
+        List<BeerDTO> read = readProtobuf(result.getResponse().getContentAsByteArray(), new TypeReference<>() {
+        });
+        assertThat(read, hasSize(2));
+        assertThat(read.get(0).getBeerName(), is("test Beer 1"));
+        assertThat(read.get(0).getBeerStyle(), is(BeerStyle.IPA));
+        assertThat(read.get(0).getPrice(), is(new BigDecimal("1.23")));
+        assertThat(read.get(1).getQuantityOnHand(), is(nullValue()));
+    }
+
+    @Test
+    void createBeersFromProtobuf() throws Exception {
+        List<BeerDTO> beers = List.of(createBeer("Beer 1"), createBeer("Beer 2"));
+        given(service.saveNewBeers(any())).willAnswer(invocation -> invocation.getArgument(0));
+        MockHttpOutputMessage body = new MockHttpOutputMessage();
+        new DtoProtobufHttpMessageConverter().write(beers, new TypeReference<List<BeerDTO>>() {
+        }.getType(), DtoProtobufHttpMessageConverter.APPLICATION_PROTOBUF, body);
+
+        mockMvc.perform(post(BeerController.BEER_BATCH_PATH)
+                .content(body.getBodyAsBytes())
+                .contentType(DtoProtobufHttpMessageConverter.APPLICATION_PROTOBUF)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[1].beerName", is("Beer 2")));
+    }
+
+    @Test
+    void getBeerStatsIsNotAvailableAsProtobuf() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_STATS_PATH)
+                .accept(DtoProtobufHttpMessageConverter.APPLICATION_PROTOBUF))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void getBeerByIdDefaultsToJson() throws Exception {
+        BeerDTO beer = createBeer("test Beer");
+        given(service.getBeerById(beer.getId())).willReturn(Optional.of(beer));
+
+        mockMvc.perform(get(BeerController.BEER_PATH_WITH_ID, beer.getId())
+                .accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    private static <T> T readProtobuf(byte[] body, TypeReference<T> type) throws IOException {
+        @SuppressWarnings("unchecked")
+        T read = (T) new DtoProtobufHttpMessageConverter().read(type.getType(), null, new MockHttpInputMessage(body));
+        return read;
     }
 
     private BeerDTO createBeer(String beerName) {
@@ -216,6 +765,7 @@ class BeerControllerTest {
                 .price(new BigDecimal("1.23"))
                 .build();
         dto.setId(UUID.randomUUID());
+        dto.setVersion(0);
         return dto;
     }
 
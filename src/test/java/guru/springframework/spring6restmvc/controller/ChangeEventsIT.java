@@ -0,0 +1,160 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.services.BeerService;
+import guru.springframework.spring6restmvc.services.ChangeEventService;
+import guru.springframework.spring6restmvc.services.CustomerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ChangeEventsIT {
+
+    @LocalServerPort
+    Integer localPort;
+
+    @Autowired
+    BeerService beerService;
+    @Autowired
+    CustomerService customerService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void beerChangesArePushedAfterCommit() throws Exception {
+        try (EventStream events = subscribe(BeerController.BEER_EVENTS_PATH, null)) {
+            BeerDTO beer = beerService.saveNewBeer(beer("Pushed"));
+            beerService.deleteById(beer.getId());
+
+            assertThat(events.next().data(), is(equalTo("{\"id\":\"" + beer.getId() + "\",\"type\":\"CREATED\"}")));
+            assertThat(events.next().data(), is(equalTo("{\"id\":\"" + beer.getId() + "\",\"type\":\"DELETED\"}")));
+        }
+    }
+
+    @Test
+    void beerChangesOutsideTheStatisticsArePushed() throws Exception {
+        BeerDTO beer = beerService.saveNewBeer(beer("Renamed"));
+        try (EventStream events = subscribe(BeerController.BEER_EVENTS_PATH, null)) {
+            beerService.patch(beer.getId(), BeerDTO.builder().beerName("Renamed Again").build(), null);
+
+            assertThat(events.next().data(), is(equalTo("{\"id\":\"" + beer.getId() + "\",\"type\":\"UPDATED\"}")));
+        } finally {
+            beerService.deleteById(beer.getId());
+        }
+    }
+
+    @Test
+    void reconnectingSubscribersGetWhatTheyMissed() throws Exception {
+        String lastEventId;
+        try (EventStream events = subscribe(CustomerController.CUSTOMER_EVENTS_PATH, null)) {
+            CustomerDTO seen = customerService.saveNewCustomer(CustomerDTO.builder().name("Seen").build());
+            Event event = events.next();
+            assertThat(event.data(), containsString(seen.getId().toString()));
+            lastEventId = event.id();
+            customerService.deleteById(seen.getId());
+        }
+        CustomerDTO missed = customerService.saveNewCustomer(CustomerDTO.builder().name("Missed").build());
+        customerService.deleteById(missed.getId());
+
+        try (EventStream events = subscribe(CustomerController.CUSTOMER_EVENTS_PATH, lastEventId)) {
+            assertThat(events.next().data(), containsString("DELETED"));
+            Event created = events.next();
+            assertThat(created.data(), containsString(missed.getId() + "\",\"type\":\"CREATED"));
+            assertThat(events.next().data(), containsString(missed.getId() + "\",\"type\":\"DELETED"));
+        }
+    }
+
+    @Test
+    void unknownEventIdsAreAnsweredWithAReset() throws Exception {
+        try (EventStream events = subscribe(BeerController.BEER_EVENTS_PATH, "from-another-process-42")) {
+            assertThat(events.next().name(), is(equalTo("reset")));
+        }
+    }
+
+    private record Event(String id, String name, String data) {
+    }
+
+    /**
+     * Reads events off an open stream, skipping heartbeat comments.
+     */
+    private static final class EventStream implements AutoCloseable {
+
+        private final Stream<String> lines;
+        private final Iterator<String> iterator;
+
+        EventStream(Stream<String> lines) {
+            this.lines = lines;
+            this.iterator = lines.iterator();
+        }
+
+        Event next() throws Exception {
+            return CompletableFuture.supplyAsync(() -> {
+                String id = null;
+                String name = null;
+                List<String> data = new ArrayList<>();
+                while(iterator.hasNext()) {
+                    String line = iterator.next();
+                    if(line.isEmpty() && !data.isEmpty()) {
+                        return new Event(id, name, String.join("\n", data));
+                    } else if(line.startsWith("id:")) {
+                        id = line.substring(3);
+                    } else if(line.startsWith("event:")) {
+                        name = line.substring(6);
+                    } else if(line.startsWith("data:")) {
+                        data.add(line.substring(5));
+                    }
+                }
+                throw new IllegalStateException("stream ended");
+            }).get(10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void close() {
+            lines.close();
+        }
+    }
+
+    private EventStream subscribe(String path, String lastEventId) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + localPort + path))
+                .header("Accept", MediaType.TEXT_EVENT_STREAM_VALUE);
+        if(lastEventId != null) {
+            request.header(ChangeEventService.LAST_EVENT_ID_HEADER, lastEventId);
+        }
+        // returns once the headers are in, by which time the subscription is registered
+        HttpResponse<Stream<String>> response = client.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+        assertThat(response.statusCode(), is(200));
+        return new EventStream(response.body());
+    }
+
+    private static BeerDTO beer(String beerName) {
+        return BeerDTO.builder()
+                .beerName(beerName)
+                .beerStyle(BeerStyle.IPA)
+                .upc("events-upc")
+                .quantityOnHand(1)
+                .price(new BigDecimal("4.00"))
+                .build();
+    }
+}
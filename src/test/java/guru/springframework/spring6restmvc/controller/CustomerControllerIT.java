@@ -1,16 +1,25 @@
 package guru.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import guru.springframework.spring6restmvc.config.QueryCountConfig;
 import guru.springframework.spring6restmvc.entities.Customer;
 import guru.springframework.spring6restmvc.exception.NotFoundException;
 import guru.springframework.spring6restmvc.mappers.CustomerMapper;
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
 import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
 import guru.springframework.spring6restmvc.repositories.CustomerRepository;
 import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.Rollback;
@@ -22,13 +31,21 @@ import java.net.URI;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertDeleteCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertInsertCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertSelectCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertTotalCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertUpdateCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.resetQueryCount;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
 @ActiveProfiles("test")
+@Import(QueryCountConfig.class)
 class CustomerControllerIT {
 
     @Autowired
@@ -39,6 +56,16 @@ class CustomerControllerIT {
     EntityManager entityManager;
     @Autowired
     CustomerMapper mapper;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        // statement counts assume every read goes to the database
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
 
     @Transactional
     @Rollback
@@ -46,7 +73,10 @@ class CustomerControllerIT {
     void deleteById() {
         CustomerDTO dto = mapper.modelToDto(repository.findAll().get(0));
         UUID id = dto.getId();
+        resetQueryCount();
         ResponseEntity<Void> voidResponseEntity = controller.deleteById(id);
+        assertDeleteCount(1);
+        assertTotalCount(1);
         assertThat(voidResponseEntity.getStatusCode(), is(equalTo(HttpStatus.NO_CONTENT)));
 
         boolean customerExists = repository.existsById(id);
@@ -55,28 +85,67 @@ class CustomerControllerIT {
 
     @Test
     void getCustomers() {
-        List<CustomerDTO> customers = controller.getCustomers();
+        resetQueryCount();
+        List<CustomerDTO> customers = controller.getCustomers(null, null).getBody();
+        assertSelectCount(1);
+        assertTotalCount(1);
         assertThat(customers, hasSize(2));
     }
 
+    @Test
+    void getCustomersPagesThroughAllCustomers() {
+        ResponseEntity<List<CustomerDTO>> firstPage = controller.getCustomers(null, 1);
+        assertThat(firstPage.getBody(), hasSize(1));
+        String pageToken = firstPage.getHeaders().getFirst(KeysetPage.NEXT_PAGE_TOKEN_HEADER);
+        assertThat(pageToken, is(notNullValue()));
+
+        resetQueryCount();
+        ResponseEntity<List<CustomerDTO>> secondPage = controller.getCustomers(pageToken, 1);
+        assertSelectCount(1);
+        assertTotalCount(1);
+        assertThat(secondPage.getBody(), hasSize(1));
+        assertThat(secondPage.getHeaders().containsKey(KeysetPage.NEXT_PAGE_TOKEN_HEADER), is(false));
+        assertThat(secondPage.getBody().get(0).getId(), is(not(equalTo(firstPage.getBody().get(0).getId()))));
+    }
+
     @Transactional
     @Rollback
     @Test
     void getEmptyListOfCustomers() {
         repository.deleteAll();
-        List<CustomerDTO> customers = controller.getCustomers();
+        repository.flush();
+        resetQueryCount();
+        List<CustomerDTO> customers = controller.getCustomers(null, null).getBody();
+        assertTotalCount(1);
         assertThat(customers, hasSize(0));
     }
 
+    @Test
+    @Transactional
+    void readsDoNotLoadEntities() {
+        UUID id = repository.findAll().get(0).getId();
+        entityManager.clear();
+
+        controller.getCustomers(null, null);
+        controller.getCustomerById(id, null);
+
+        assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount(), is(0));
+    }
+
     @Test
     void getCustomerByIdThatExists() {
         CustomerDTO dto = mapper.modelToDto(repository.findAll().get(0));
-        CustomerDTO customer = controller.getCustomerById(dto.getId());
+        resetQueryCount();
+        CustomerDTO customer = controller.getCustomerById(dto.getId(), null).getBody();
+        assertSelectCount(1);
+        assertTotalCount(1);
         assertThat(customer, is(notNullValue()));
     }
     @Test
     void testGetCustomerByIdWithAnIdThatDoesNotExist() {
-        assertThrows(NotFoundException.class, () -> controller.getCustomerById(UUID.randomUUID()));
+        resetQueryCount();
+        assertThrows(NotFoundException.class, () -> controller.getCustomerById(UUID.randomUUID(), null));
+        assertTotalCount(1);
     }
 
     @Transactional
@@ -84,8 +153,11 @@ class CustomerControllerIT {
     @Test
     void createCustomer() {
         CustomerDTO dto = CustomerDTO.builder().name("new name").build();
-        ResponseEntity<CustomerDTO> responseEntity = controller.createCustomer(dto);
+        resetQueryCount();
+        ResponseEntity<CustomerDTO> responseEntity = controller.createCustomer(dto, null);
         entityManager.flush();
+        assertInsertCount(1);
+        assertTotalCount(1);
         assertThat(responseEntity.getStatusCode(), is(equalTo(HttpStatus.CREATED)));
         URI location = responseEntity.getHeaders().getLocation();
         assertThat(location, is(notNullValue()));
@@ -107,8 +179,11 @@ class CustomerControllerIT {
     void updateById() {
         CustomerDTO dto = mapper.modelToDto(repository.findAll().get(0));
         dto.setName("updated name for test");
-        ResponseEntity<Void> responseEntity = controller.updateById(dto.getId(), dto);
+        resetQueryCount();
+        ResponseEntity<Void> responseEntity = controller.updateById(dto.getId(), dto, null);
         entityManager.flush();
+        assertUpdateCount(1);
+        assertTotalCount(1);
         assertThat(responseEntity.getStatusCode(), is(equalTo(HttpStatus.NO_CONTENT)));
 
         Optional<Customer> byId = repository.findById(dto.getId());
@@ -127,8 +202,12 @@ class CustomerControllerIT {
     void patchById() {
         CustomerDTO dto = mapper.modelToDto(repository.findAll().get(0));
         dto.setName("updated name for test");
-        ResponseEntity<Void> responseEntity = controller.patchById(dto.getId(), dto);
-        entityManager.flush();
+        entityManager.clear();
+        resetQueryCount();
+        ResponseEntity<Void> responseEntity = controller.patchById(dto.getId(), dto, null);
+        assertSelectCount(1);
+        assertUpdateCount(1);
+        assertTotalCount(2);
         assertThat(responseEntity.getStatusCode(), is(equalTo(HttpStatus.NO_CONTENT)));
 
         Optional<Customer> byId = repository.findById(dto.getId());
@@ -139,18 +218,99 @@ class CustomerControllerIT {
         assertThat(customer.getCreatedDate(), is(equalTo(dto.getCreatedDate())));
         assertThat(customer.getUpdateDate(), is(notNullValue()));
         assertThat(customer.getUpdateDate(), is(not(equalTo(customer.getCreatedDate()))));
+        assertThat(responseEntity.getHeaders().getETag(), is("\"" + dto.getId() + ":" + (dto.getVersion() + 1) + "\""));
+    }
+
+    @Transactional
+    @Rollback
+    @Test
+    void mergePatchByIdClearsNullMembers() {
+        CustomerDTO dto = mapper.modelToDto(repository.findAll().get(0));
+        ObjectNode patch = objectMapper.createObjectNode().putNull("name");
+
+        entityManager.clear();
+        resetQueryCount();
+        controller.mergePatchById(dto.getId(), patch, null);
+        assertSelectCount(1);
+        assertUpdateCount(1);
+        assertTotalCount(2);
+
+        assertThat(repository.findById(dto.getId()).get().getName(), is(nullValue()));
+    }
+
+    @Transactional
+    @Rollback
+    @Test
+    void updateCustomersBatch() {
+        List<Customer> customers = repository.findAll();
+        CustomerDTO current = mapper.modelToDto(customers.get(0));
+        current.setName("batch updated");
+        CustomerDTO stale = mapper.modelToDto(customers.get(1));
+        stale.setVersion(stale.getVersion() + 1);
+        CustomerDTO missing = CustomerDTO.builder().name("missing").build();
+        missing.setId(UUID.randomUUID());
+        missing.setVersion(0);
+
+        resetQueryCount();
+        BatchUpdateResult result = controller.updateCustomers(List.of(current, stale, missing));
+        assertSelectCount(1);
+        assertUpdateCount(1);
+        assertTotalCount(2);
+
+        assertThat(result.getUpdated(), contains(current.getId()));
+        assertThat(result.getConflicts(), contains(stale.getId()));
+        assertThat(result.getNotFound(), contains(missing.getId()));
+        assertThat(repository.findById(current.getId()).orElseThrow().getName(), is("batch updated"));
+    }
+
+    @Transactional
+    @Rollback
+    @Test
+    void patchCustomersBatch() {
+        int batchSize = 50;
+        // enough rows for more than one batch
+        repository.saveAllAndFlush(IntStream.range(0, 120)
+                .mapToObj(i -> Customer.builder().name("Customer " + i).build())
+                .toList());
+        entityManager.clear();
+        List<CustomerDTO> patches = repository.findAll().stream()
+                .map(customer -> {
+                    CustomerDTO dto = CustomerDTO.builder().name("patched").build();
+                    dto.setId(customer.getId());
+                    dto.setVersion(customer.getVersion());
+                    return dto;
+                })
+                .toList();
+
+        resetQueryCount();
+        BatchUpdateResult result = controller.patchCustomers(patches);
+        assertSelectCount(1);
+        assertUpdateCount((long) (patches.size() + batchSize - 1) / batchSize);
+        assertTotalCount(1 + (long) (patches.size() + batchSize - 1) / batchSize);
+
+        assertThat(result.getUpdated(), hasSize(122));
+        assertThat(repository.findAll(), everyItem(hasProperty("name", is("patched"))));
     }
 
     @Test
     void testDeleteByNonExistentId() {
+        resetQueryCount();
         assertThrows(NotFoundException.class, () -> controller.deleteById(UUID.randomUUID()));
+        assertDeleteCount(1);
+        assertTotalCount(1);
     }
     @Test
     void testUpdateByNonExistentId() {
-        assertThrows(NotFoundException.class, () -> controller.updateById(UUID.randomUUID(), CustomerDTO.builder().build()));
+        resetQueryCount();
+        assertThrows(NotFoundException.class, () -> controller.updateById(UUID.randomUUID(), CustomerDTO.builder().build(), null));
+        assertUpdateCount(1);
+        assertTotalCount(1);
     }
     @Test
     void testPatchByNonExistentId() {
-        assertThrows(NotFoundException.class, () -> controller.patchById(UUID.randomUUID(), CustomerDTO.builder().build()));
+        resetQueryCount();
+        assertThrows(NotFoundException.class, () -> controller.patchById(UUID.randomUUID(), CustomerDTO.builder().build(), null));
+        assertSelectCount(1);
+        assertTotalCount(1);
     }
 }
\ No newline at end of file
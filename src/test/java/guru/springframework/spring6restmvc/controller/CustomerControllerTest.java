@@ -1,21 +1,35 @@
 package guru.springframework.spring6restmvc.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.config.DtoProtobufHttpMessageConverter;
+import guru.springframework.spring6restmvc.dto.BatchUpdateResult;
 import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.dto.KeysetPage;
 import guru.springframework.spring6restmvc.services.CustomerService;
+import guru.springframework.spring6restmvc.services.ChangeEventService;
+import guru.springframework.spring6restmvc.services.ChangeFeedService;
+import guru.springframework.spring6restmvc.services.IdempotencyService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -33,6 +47,15 @@ class CustomerControllerTest {
     @MockBean
     CustomerService service;
 
+    @MockBean
+    IdempotencyService idempotencyService;
+
+    @MockBean
+    ChangeFeedService changeFeedService;
+
+    @MockBean
+    ChangeEventService changeEventService;
+
     @Test
     void getCustomerById() throws Exception {
         CustomerDTO customer = createCustomer("test Beer");
@@ -43,8 +66,21 @@ class CustomerControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id", is(customer.getId().toString())))
-                .andExpect(jsonPath("$.name", is(customer.getName())));
+                .andExpect(jsonPath("$.name", is(customer.getName())))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + customer.getId() + ":0\""));
+
+    }
 
+    @Test
+    void getCustomerByIdNotModified() throws Exception {
+        UUID id = UUID.randomUUID();
+        given(service.getCustomerVersion(id)).willReturn(Optional.of(1));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_PATH_WITH_ID, id)
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"" + id + ":1\"")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+        verify(service, never()).getCustomerById(any());
     }
 
     @Test
@@ -73,7 +109,9 @@ class CustomerControllerTest {
         CustomerDTO customer2 = createCustomer("test Beer 2");
         CustomerDTO customer3 = createCustomer("test Beer 3");
 
-        given(service.listCustomers()).willReturn(List.of(customer1, customer2, customer3));
+        given(service.listCustomers(any(), any())).willReturn(KeysetPage.<CustomerDTO>builder()
+                .content(List.of(customer1, customer2, customer3))
+                .build());
 
         mockMvc.perform(get(CustomerController.CUSTOMER_PATH)
                 .accept(MediaType.APPLICATION_JSON))
@@ -87,6 +125,46 @@ class CustomerControllerTest {
 
     }
 
+    @Test
+    void getCustomersWithPageToken() throws Exception {
+        CustomerDTO customer = createCustomer("test Beer 1");
+        given(service.listCustomers("token1", 1)).willReturn(KeysetPage.<CustomerDTO>builder()
+                .content(List.of(customer))
+                .nextPageToken("token2")
+                .build());
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_PATH)
+                .queryParam("pageToken", "token1")
+                .queryParam("pageSize", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetPage.NEXT_PAGE_TOKEN_HEADER, "token2"))
+                .andExpect(jsonPath("$.length()", is(1)));
+    }
+
+    @Test
+    void createCustomerWithIdempotencyKey() throws Exception {
+        CustomerDTO customer = createCustomer("Innis & Gunn Tap Room");
+        String location = CustomerController.CUSTOMER_PATH + "/" + customer.getId();
+        given(service.saveNewCustomer(any(CustomerDTO.class))).willReturn(customer);
+        given(idempotencyService.<CustomerDTO>create(eq(CustomerController.CUSTOMER_PATH), eq("signup-7"), any()))
+                .willAnswer(invocation -> {
+                    CustomerDTO created = invocation.<Supplier<CustomerDTO>>getArgument(2).get();
+                    return new IdempotencyService.Created<>(created.getId(), location, created);
+                });
+
+        mockMvc.perform(post(CustomerController.CUSTOMER_PATH)
+                .header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, "signup-7")
+                .content(mapper.writeValueAsBytes(customer))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, location))
+                .andExpect(header().doesNotExist(IdempotencyService.IDEMPOTENT_REPLAYED_HEADER))
+                .andExpect(jsonPath("$.name", is(customer.getName())));
+        verify(service).saveNewCustomer(any(CustomerDTO.class));
+    }
+
     @Test
     void creatCustomer() throws Exception {
         CustomerDTO customer = createCustomer("Innis & Gunn Tap Room");
@@ -105,54 +183,111 @@ class CustomerControllerTest {
     void updateById() throws Exception {
         CustomerDTO customer = createCustomer("testCustomer");
         UUID id = customer.getId();
-        given(service.update(eq(id), any(CustomerDTO.class))).willReturn(Optional.of(customer));
+        given(service.update(eq(id), any(CustomerDTO.class), any())).willReturn(true);
 
         mockMvc.perform(put(CustomerController.CUSTOMER_PATH_WITH_ID, customer.getId())
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(customer)))
                 .andExpect(status().isNoContent());
-        verify(service).update(eq(id), any(CustomerDTO.class));
+        verify(service).update(eq(id), any(CustomerDTO.class), any());
+    }
+    @Test
+    void updateCustomersBatch() throws Exception {
+        CustomerDTO customer = createCustomer("testCustomer");
+        given(service.updateAll(any())).willReturn(BatchUpdateResult.builder()
+                .updated(List.of(customer.getId()))
+                .notFound(List.of())
+                .conflicts(List.of())
+                .build());
+
+        mockMvc.perform(put(CustomerController.CUSTOMER_BATCH_PATH)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(List.of(customer))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated[0]", is(customer.getId().toString())));
+    }
+
+    @Test
+    void updateCustomersBatchRequiresVersions() throws Exception {
+        CustomerDTO customer = createCustomer("testCustomer");
+        customer.setVersion(null);
+
+        mockMvc.perform(put(CustomerController.CUSTOMER_BATCH_PATH)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(List.of(customer))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.[0].fieldName", is("[0].version")));
+        verify(service, never()).updateAll(any());
     }
+
+    @Test
+    void patchCustomersBatchRequiresIds() throws Exception {
+        CustomerDTO customer = CustomerDTO.builder().name("new name").build();
+
+        mockMvc.perform(patch(CustomerController.CUSTOMER_BATCH_PATH)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(List.of(customer))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.[0].fieldName", is("[0].id")));
+        verify(service, never()).patchAll(any());
+    }
+
     @Test
     void updateByIdNotFound() throws Exception {
         CustomerDTO customer = createCustomer("testCustomer");
         UUID id = customer.getId();
-        given(service.update(eq(id), any(CustomerDTO.class))).willReturn(Optional.empty());
+        given(service.update(eq(id), any(CustomerDTO.class), any())).willReturn(false);
 
         mockMvc.perform(put(CustomerController.CUSTOMER_PATH_WITH_ID, id)
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(customer)))
                 .andExpect(status().isNotFound());
-        verify(service).update(eq(id), any(CustomerDTO.class));
+        verify(service).update(eq(id), any(CustomerDTO.class), any());
     }
 
     @Test
     void patchById() throws Exception {
         CustomerDTO customer = createCustomer("new name");
         UUID id = UUID.randomUUID();
-        given(service.patch(any(UUID.class), any(CustomerDTO.class))).willReturn(Optional.of(customer));
+        given(service.patch(any(UUID.class), any(CustomerDTO.class), any())).willReturn(Optional.of(customer));
 
         mockMvc.perform(patch(CustomerController.CUSTOMER_PATH_WITH_ID, id)
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(customer)))
                 .andExpect(status().isNoContent());
-        verify(service).patch(any(UUID.class), any(CustomerDTO.class));
+        verify(service).patch(any(UUID.class), any(CustomerDTO.class), any());
     }
+    @Test
+    void mergePatchById() throws Exception {
+        CustomerDTO customer = createCustomer("merged");
+        given(service.mergePatch(eq(customer.getId()), any(), any())).willReturn(Optional.of(customer));
+
+        mockMvc.perform(patch(CustomerController.CUSTOMER_PATH_WITH_ID, customer.getId())
+                .contentType(MergePatches.MEDIA_TYPE)
+                .content("{\"name\": \"merged\"}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + customer.getId() + ":0\""));
+        verify(service, never()).patch(any(), any(), any());
+    }
+
     @Test
     void patchByIdNotFound() throws Exception {
         CustomerDTO customer = createCustomer("new name");
         UUID id = customer.getId();
-        given(service.patch(eq(id), any(CustomerDTO.class))).willReturn(Optional.empty());
+        given(service.patch(eq(id), any(CustomerDTO.class), any())).willReturn(Optional.empty());
 
         mockMvc.perform(patch(CustomerController.CUSTOMER_PATH_WITH_ID, customer.getId())
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(mapper.writeValueAsString(customer)))
                 .andExpect(status().isNotFound());
-        verify(service).patch(eq(id), any(CustomerDTO.class));
+        verify(service).patch(eq(id), any(CustomerDTO.class), any());
     }
 
     @Test
@@ -162,11 +297,50 @@ class CustomerControllerTest {
         mockMvc.perform(get(CustomerController.CUSTOMER_PATH_WITH_ID, UUID.randomUUID()))
                 .andExpect(status().isNotFound());
     }
+    @Test
+    void getCustomerByIdAsProtobuf() throws Exception {
+        CustomerDTO customer = createCustomer("Jack Reacher");
+        given(service.getCustomerById(customer.getId())).willReturn(Optional.of(customer));
+
+        MvcResult result = mockMvc.perform(get(CustomerController.CUSTOMER_PATH_WITH_ID, customer.getId())
+                .accept(DtoProtobufHttpMessageConverter.APPLICATION_PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(DtoProtobufHttpMessageConverter.APPLICATION_PROTOBUF))
+                .andReturn();
+
+        CustomerDTO read = (CustomerDTO) new DtoProtobufHttpMessageConverter().read(CustomerDTO.class, null,
+                new MockHttpInputMessage(result.getResponse().getContentAsByteArray()));
+        assertThat(read.getId(), is(customer.getId()));
+        assertThat(read.getName(), is("Jack Reacher"));
+        assertThat(read.getUpdateDate(), is(customer.getUpdateDate()));
+    }
+
+    @Test
+    void updateCustomersFromCbor() throws Exception {
+        CustomerDTO customer = createCustomer("Rebus");
+        customer.setVersion(2);
+        given(service.updateAll(any())).willReturn(BatchUpdateResult.builder()
+                .updated(List.of(customer.getId()))
+                .notFound(List.of())
+                .conflicts(List.of())
+                .build());
+
+        mockMvc.perform(put(CustomerController.CUSTOMER_BATCH_PATH)
+                .content(Jackson2ObjectMapperBuilder.cbor().build().writeValueAsBytes(List.of(customer)))
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated[0]", is(customer.getId().toString())));
+        verify(service).updateAll(argThat(customers -> customers.get(0).getName().equals("Rebus")
+                && customers.get(0).getVersion() == 2));
+    }
+
     private CustomerDTO createCustomer(String name) {
         CustomerDTO dto = CustomerDTO.builder()
                 .name(name)
                 .build();
         dto.setId(UUID.randomUUID());
+        dto.setVersion(0);
         return dto;
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package guru.springframework.spring6restmvc.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class DtoSerializersTest {
+
+    // Spring Boot writes dates as ISO-8601 strings
+    private final ObjectMapper beanMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final ObjectMapper handWrittenMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .serializers(new DtoSerializers.BeerDTOSerializer(), new DtoSerializers.CustomerDTOSerializer())
+            .build();
+
+    @Test
+    void beersAreWrittenAsTheBeanSerializerWritesThem() throws Exception {
+        List<BeerDTO> beers = List.of(
+                new BeerDTO(UUID.randomUUID(), 3, LocalDateTime.of(2024, 1, 2, 3, 4, 5),
+                        LocalDateTime.of(2024, 1, 2, 3, 4, 5, 120_000_000), "Guinness", BeerStyle.STOUT, "upc",
+                        12, new BigDecimal("5.10")),
+                new BeerDTO(null, null, null, LocalDateTime.of(12024, 1, 2, 3, 4), "Quote \"me\"", null, null,
+                        null, null));
+
+        assertThat(handWrittenMapper.writeValueAsString(beers), is(equalTo(beanMapper.writeValueAsString(beers))));
+    }
+
+    @Test
+    void customersAreWrittenAsTheBeanSerializerWritesThem() throws Exception {
+        CustomerDTO customer = new CustomerDTO(UUID.randomUUID(), 1, LocalDateTime.of(2023, 12, 31, 23, 59, 59, 1),
+                LocalDateTime.now(), "Jack Reacher");
+
+        assertThat(handWrittenMapper.writeValueAsString(customer),
+                is(equalTo(beanMapper.writeValueAsString(customer))));
+    }
+
+    @Test
+    void timestampDatesAreLeftToJackson() throws Exception {
+        ObjectMapper timestampMapper = Jackson2ObjectMapperBuilder.json().build();
+        BeerDTO beer = BeerDTO.builder().beerName("Timestamps").beerStyle(BeerStyle.IPA).build();
+
+        assertThat(handWrittenMapper.copy().enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .writeValueAsString(beer), is(equalTo(timestampMapper.writeValueAsString(beer))));
+    }
+
+    @Test
+    void datesAreFormattedAsIsoLocalDateTime() {
+        SplittableRandom random = new SplittableRandom(42);
+        char[] chars = new char[29];
+        for (int i = 0; i < 10_000; i++) {
+            // fractions with up to eight trailing zeros, and some with none at all
+            int scale = (int) Math.pow(10, random.nextInt(9));
+            int nano = random.nextInt(4) == 0 ? 0 : random.nextInt(1_000_000_000) / scale * scale;
+            LocalDateTime date = LocalDateTime.of(random.nextInt(10_000), 1 + random.nextInt(12),
+                    1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60), nano);
+
+            int length = DtoSerializers.formatIsoLocalDateTime(date, chars);
+
+            assertThat(new String(chars, 0, length), is(equalTo(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(date))));
+        }
+    }
+}
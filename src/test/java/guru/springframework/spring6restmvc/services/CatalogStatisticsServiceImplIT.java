@@ -0,0 +1,111 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.dto.BeerStyleStatsDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CatalogStatisticsServiceImplIT {
+
+    @Autowired
+    CatalogStatisticsService statisticsService;
+    @Autowired
+    BeerService beerService;
+    @Autowired
+    InventoryService inventoryService;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        statisticsService.reconcile();
+    }
+
+    @Test
+    void totalsFollowEveryChangeToABeer() {
+        BeerStyleStatsDTO stouts = stats(BeerStyle.STOUT);
+        BeerStyleStatsDTO ipas = stats(BeerStyle.IPA);
+
+        BeerDTO beer = beerService.saveNewBeer(beer(BeerStyle.STOUT, 10, "3.00"));
+        assertTotals(BeerStyle.STOUT, stouts.getBeerCount() + 1, stouts.getTotalQuantityOnHand() + 10,
+                stouts.getTotalPrice().add(new BigDecimal("3.00")));
+
+        beerService.update(beer.getId(), beer(BeerStyle.IPA, 5, "3.50"), null);
+        assertTotals(BeerStyle.STOUT, stouts.getBeerCount(), stouts.getTotalQuantityOnHand(), stouts.getTotalPrice());
+        assertTotals(BeerStyle.IPA, ipas.getBeerCount() + 1, ipas.getTotalQuantityOnHand() + 5,
+                ipas.getTotalPrice().add(new BigDecimal("3.50")));
+
+        inventoryService.adjust(beer.getId(), 3);
+        assertTotals(BeerStyle.IPA, ipas.getBeerCount() + 1, ipas.getTotalQuantityOnHand() + 8,
+                ipas.getTotalPrice().add(new BigDecimal("3.50")));
+
+        BeerDTO pricePatch = BeerDTO.builder().price(new BigDecimal("4.00")).build();
+        beerService.patch(beer.getId(), pricePatch, null);
+        assertTotals(BeerStyle.IPA, ipas.getBeerCount() + 1, ipas.getTotalQuantityOnHand() + 8,
+                ipas.getTotalPrice().add(new BigDecimal("4.00")));
+
+        List<BeerStyleStatsDTO> incremental = statisticsService.getStats();
+        statisticsService.reconcile();
+        assertThat(summary(statisticsService.getStats()), is(equalTo(summary(incremental))));
+
+        beerService.deleteById(beer.getId());
+        assertTotals(BeerStyle.IPA, ipas.getBeerCount(), ipas.getTotalQuantityOnHand(), ipas.getTotalPrice());
+    }
+
+    @Test
+    void rolledBackChangesAreNotCounted() {
+        BeerStyleStatsDTO lagers = stats(BeerStyle.LAGER);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            beerService.saveNewBeer(beer(BeerStyle.LAGER, 1, "2.00"));
+            status.setRollbackOnly();
+        });
+
+        assertTotals(BeerStyle.LAGER, lagers.getBeerCount(), lagers.getTotalQuantityOnHand(), lagers.getTotalPrice());
+    }
+
+    private void assertTotals(BeerStyle beerStyle, long beerCount, long quantityOnHand, BigDecimal totalPrice) {
+        BeerStyleStatsDTO stats = stats(beerStyle);
+        assertThat(stats.getBeerCount(), is(beerCount));
+        assertThat(stats.getTotalQuantityOnHand(), is(quantityOnHand));
+        assertThat(stats.getTotalPrice(), is(comparesEqualTo(totalPrice)));
+    }
+
+    private BeerStyleStatsDTO stats(BeerStyle beerStyle) {
+        Optional<BeerStyleStatsDTO> stats = statisticsService.getStats().stream()
+                .filter(style -> style.getBeerStyle() == beerStyle)
+                .findFirst();
+        return stats.orElseThrow();
+    }
+
+    private static List<String> summary(List<BeerStyleStatsDTO> stats) {
+        return stats.stream()
+                .map(style -> style.getBeerStyle() + ":" + style.getBeerCount() + ":"
+                        + style.getTotalQuantityOnHand() + ":" + style.getTotalPrice().stripTrailingZeros())
+                .toList();
+    }
+
+    private static BeerDTO beer(BeerStyle beerStyle, int quantityOnHand, String price) {
+        return BeerDTO.builder()
+                .beerName("Stats Beer")
+                .beerStyle(beerStyle)
+                .upc("stats-upc")
+                .quantityOnHand(quantityOnHand)
+                .price(new BigDecimal(price))
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.dto.ChangeType;
+import guru.springframework.spring6restmvc.events.CustomerChangedEvent;
+import guru.springframework.spring6restmvc.services.ChangeEventService.Topic;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChangeEventServiceImplTest {
+
+    @Test
+    void subscribersThatKeepUpStaySubscribed() {
+        ChangeEventServiceImpl service = new ChangeEventServiceImpl(new ObjectMapper(), Runnable::run,
+                Duration.ofMinutes(1), 2, 10);
+        service.subscribe(Topic.CUSTOMER, null);
+
+        for (int i = 0; i < 10; i++) {
+            service.onCustomerChanged(new CustomerChangedEvent(UUID.randomUUID(), ChangeType.UPDATED));
+        }
+
+        assertThat(service.subscriberCount(Topic.CUSTOMER), is(1));
+    }
+
+    @Test
+    void slowSubscribersAreDropped() {
+        // deliveries are never run, as if the subscriber had stopped reading
+        List<Runnable> stalled = new ArrayList<>();
+        ChangeEventServiceImpl service = new ChangeEventServiceImpl(new ObjectMapper(), stalled::add,
+                Duration.ofMinutes(1), 2, 10);
+        service.subscribe(Topic.CUSTOMER, null);
+        service.subscribe(Topic.BEER, null);
+
+        for (int i = 0; i < 3; i++) {
+            service.onCustomerChanged(new CustomerChangedEvent(UUID.randomUUID(), ChangeType.UPDATED));
+        }
+
+        assertThat(service.subscriberCount(Topic.CUSTOMER), is(0));
+        assertThat(service.subscriberCount(Topic.BEER), is(1));
+    }
+
+    @Test
+    void droppedSubscribersAreCompletedByTheDeliveryThread() {
+        List<Runnable> stalled = new ArrayList<>();
+        ChangeEventServiceImpl service = new ChangeEventServiceImpl(new ObjectMapper(), stalled::add,
+                Duration.ofMinutes(1), 2, 10);
+        SseEmitter emitter = service.subscribe(Topic.CUSTOMER, null);
+
+        for (int i = 0; i < 3; i++) {
+            service.onCustomerChanged(new CustomerChangedEvent(UUID.randomUUID(), ChangeType.UPDATED));
+        }
+
+        // the publisher only marked it, so it wasn't held up by the stream
+        assertDoesNotThrow(() -> emitter.send("still open"));
+        stalled.forEach(Runnable::run);
+        assertThrows(IllegalStateException.class, () -> emitter.send("completed"));
+    }
+}
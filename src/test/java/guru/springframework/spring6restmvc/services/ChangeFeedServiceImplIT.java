@@ -0,0 +1,192 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.config.QueryCountConfig;
+import guru.springframework.spring6restmvc.dto.BeerDTO;
+import guru.springframework.spring6restmvc.dto.BeerStyle;
+import guru.springframework.spring6restmvc.dto.ChangeFeedPage;
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.dto.DtoBase;
+import guru.springframework.spring6restmvc.entities.Tombstone;
+import guru.springframework.spring6restmvc.entities.Tombstone.ResourceType;
+import guru.springframework.spring6restmvc.exception.InvalidPageTokenException;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import guru.springframework.spring6restmvc.repositories.TombstoneRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertSelectCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertTotalCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.resetQueryCount;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// changes are served as soon as they are made, rather than once they have settled
+@SpringBootTest(properties = "changes.settle-time=PT0S")
+@ActiveProfiles("test")
+@Import(QueryCountConfig.class)
+class ChangeFeedServiceImplIT {
+
+    @Autowired
+    ChangeFeedService changeFeedService;
+    @Autowired
+    BeerService beerService;
+    @Autowired
+    CustomerService customerService;
+    @Autowired
+    BeerRepository beerRepository;
+    @Autowired
+    CustomerRepository customerRepository;
+    @Autowired
+    TombstoneRepository tombstoneRepository;
+
+    @Test
+    void beerChangesAndDeletionsSinceAWatermark() {
+        String watermark = catchUp(changeFeedService::getBeerChanges, null, null).nextWatermark();
+        BeerDTO kept = beerService.saveNewBeer(beer("Kept"));
+        BeerDTO deleted = beerService.saveNewBeer(beer("Deleted"));
+        beerService.deleteById(deleted.getId());
+
+        resetQueryCount();
+        ChangeFeedPage<BeerDTO> changes = changeFeedService.getBeerChanges(watermark, null);
+
+        assertSelectCount(2);
+        assertTotalCount(2);
+        assertThat(ids(changes.getChanged()), contains(kept.getId()));
+        assertThat(changes.getDeleted(), contains(deleted.getId()));
+        assertThat(changes.isMore(), is(false));
+
+        ChangeFeedPage<BeerDTO> nothingNew = changeFeedService.getBeerChanges(changes.getNextWatermark(), null);
+        assertThat(nothingNew.getChanged(), is(empty()));
+        assertThat(nothingNew.getDeleted(), is(empty()));
+        assertThat(nothingNew.getNextWatermark(), is(equalTo(changes.getNextWatermark())));
+
+        beerService.deleteById(kept.getId());
+    }
+
+    @Test
+    void theWholeCatalogIsPagedThroughFromTheStart() {
+        Feed feed = catchUp(changeFeedService::getBeerChanges, null, 1);
+
+        assertThat(feed.changed(), hasSize((int) beerRepository.count()));
+        assertThat(feed.changed().stream().distinct().count(), is((long) feed.changed().size()));
+        assertThat(feed.deleted(), hasSize((int) beerTombstones()));
+    }
+
+    @Test
+    void customerChangesAndDeletionsSinceAWatermark() {
+        String watermark = catchUp(changeFeedService::getCustomerChanges, null, null).nextWatermark();
+        CustomerDTO customer = customerService.saveNewCustomer(CustomerDTO.builder().name("Short stay").build());
+        CustomerDTO renamed = customerRepository.findAllDtos(Limit.of(1)).get(0);
+        customerService.patch(renamed.getId(), CustomerDTO.builder().name(renamed.getName() + "!").build(), null);
+        customerService.deleteById(customer.getId());
+
+        Feed feed = catchUp(changeFeedService::getCustomerChanges, watermark, null);
+
+        assertThat(feed.changed(), contains(renamed.getId()));
+        assertThat(feed.deleted(), contains(customer.getId()));
+
+        customerService.patch(renamed.getId(), CustomerDTO.builder().name(renamed.getName()).build(), null);
+    }
+
+    @Test
+    void changesAreHeldBackUntilTheyHaveSettled() {
+        ChangeFeedService settling = new ChangeFeedServiceImpl(beerRepository, customerRepository,
+                tombstoneRepository, Duration.ofHours(1), Duration.ofDays(30));
+        String watermark = catchUp(settling::getBeerChanges, null, null).nextWatermark();
+        BeerDTO beer = beerService.saveNewBeer(beer("Unsettled"));
+
+        ChangeFeedPage<BeerDTO> changes = settling.getBeerChanges(watermark, null);
+
+        assertThat(changes.getChanged(), is(empty()));
+        assertThat(changes.getNextWatermark(), is(equalTo(watermark)));
+        beerService.deleteById(beer.getId());
+    }
+
+    @Test
+    void clientSuppliedIdsAreNotReusedAfterADelete() {
+        UUID clientId = UUID.randomUUID();
+        for (int i = 0; i < 2; i++) {
+            BeerDTO beer = beer("Recreated");
+            beer.setId(clientId);
+            BeerDTO savedBeer = beerService.saveNewBeer(beer);
+            CustomerDTO customer = CustomerDTO.builder().name("Recreated").build();
+            customer.setId(clientId);
+            CustomerDTO savedCustomer = customerService.saveNewCustomer(customer);
+
+            assertThat(savedBeer.getId(), is(not(clientId)));
+            assertThat(savedCustomer.getId(), is(not(clientId)));
+            assertThat(beerService.deleteById(savedBeer.getId()), is(true));
+            assertThat(customerService.deleteById(savedCustomer.getId()), is(true));
+        }
+    }
+
+    @Test
+    void deletingAnIdAgainMovesItsTombstone() {
+        UUID id = UUID.randomUUID();
+        tombstoneRepository.save(new Tombstone(id, ResourceType.CUSTOMER, LocalDateTime.now().minusDays(1)));
+        try {
+            tombstoneRepository.save(Tombstone.of(ResourceType.CUSTOMER, id));
+
+            assertThat(tombstoneRepository.findById(id).orElseThrow().getDeletedDate(),
+                    is(greaterThan(LocalDateTime.now().minusHours(1))));
+        } finally {
+            tombstoneRepository.deleteAllByIdInBatch(List.of(id));
+        }
+    }
+
+    @Test
+    void invalidWatermarksAreRejected() {
+        assertThrows(InvalidPageTokenException.class, () -> changeFeedService.getBeerChanges("not a watermark", null));
+    }
+
+    private record Feed(List<UUID> changed, List<UUID> deleted, String nextWatermark) {
+    }
+
+    private static <T extends DtoBase> Feed catchUp(BiFunction<String, Integer, ChangeFeedPage<T>> feed,
+                                                    String watermark, Integer pageSize) {
+        List<UUID> changed = new ArrayList<>();
+        List<UUID> deleted = new ArrayList<>();
+        ChangeFeedPage<T> page;
+        do {
+            page = feed.apply(watermark, pageSize);
+            changed.addAll(ids(page.getChanged()));
+            deleted.addAll(page.getDeleted());
+            watermark = page.getNextWatermark();
+        } while(page.isMore());
+        return new Feed(changed, deleted, watermark);
+    }
+
+    private long beerTombstones() {
+        return tombstoneRepository.findAll().stream()
+                .filter(tombstone -> tombstone.getResourceType() == ResourceType.BEER)
+                .count();
+    }
+
+    private static List<UUID> ids(List<? extends DtoBase> dtos) {
+        return dtos.stream().map(DtoBase::getId).toList();
+    }
+
+    private static BeerDTO beer(String beerName) {
+        return BeerDTO.builder()
+                .beerName(beerName)
+                .beerStyle(BeerStyle.LAGER)
+                .upc("feed-upc")
+                .quantityOnHand(1)
+                .price(new BigDecimal("2.50"))
+                .build();
+    }
+}
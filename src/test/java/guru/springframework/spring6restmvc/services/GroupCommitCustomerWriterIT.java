@@ -0,0 +1,153 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.mappers.CustomerMapper;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "customer.group-commit.enabled=true",
+        // long enough for every caller in a test to join the first batch
+        "customer.group-commit.max-delay=PT0.5S",
+        "customer.group-commit.max-batch-size=10"
+})
+@ActiveProfiles("test")
+class GroupCommitCustomerWriterIT {
+
+    @Autowired
+    CustomerService customerService;
+    @Autowired
+    CustomerRepository repository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    CustomerMapper mapper;
+
+    // committed customers are removed again, since other tests count them
+    private final List<UUID> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAllById(created);
+    }
+
+    @Test
+    void concurrentCreatesShareCommits() throws Exception {
+        int callers = 40;
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long transactionsBefore = statistics.getTransactionCount();
+
+        List<Future<CustomerDTO>> results = createConcurrently(IntStream.range(0, callers)
+                .mapToObj(i -> "Group " + i)
+                .toList());
+
+        for (int i = 0; i < callers; i++) {
+            CustomerDTO customer = results.get(i).get();
+            created.add(customer.getId());
+            assertThat(customer.getName(), is(equalTo("Group " + i)));
+            assertThat(customer.getVersion(), is(0));
+        }
+        assertThat(created.stream().distinct().count(), is((long) callers));
+        assertThat(repository.findAllById(created), hasSize(callers));
+        // four full batches when every caller is on time; each one late adds at most one more
+        assertThat(statistics.getTransactionCount() - transactionsBefore, is(lessThanOrEqualTo((long) callers / 2)));
+    }
+
+    @Test
+    void aFailingCustomerOnlyFailsItsOwnCaller() throws Exception {
+        List<Future<CustomerDTO>> results = createConcurrently(List.of("Good 1", "x".repeat(300), "Good 2"));
+
+        created.add(results.get(0).get().getId());
+        created.add(results.get(2).get().getId());
+        assertThrows(ExecutionException.class, () -> results.get(1).get());
+        assertThat(repository.findAllById(created), hasSize(2));
+    }
+
+    @Test
+    void createsInTheCallersTransactionAreNotQueued() {
+        UUID id = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return customerService.saveNewCustomer(CustomerDTO.builder().name("Rolled back").build()).getId();
+        });
+
+        assertThat(repository.existsById(id), is(false));
+    }
+
+    @Test
+    void createsAfterStopAreInsertedByTheCaller() throws Exception {
+        GroupCommitCustomerWriter writer = new GroupCommitCustomerWriter(repository, mapper, transactionTemplate,
+                Duration.ofMillis(5), 10, Duration.ofSeconds(10));
+        writer.start();
+        writer.stop();
+
+        CustomerDTO customer = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> writer.save(CustomerDTO.builder().name("After Stop").build()));
+
+        created.add(customer.getId());
+        assertThat(repository.existsById(customer.getId()), is(true));
+    }
+
+    @Test
+    void anErrorInTheWriterFailsItsBatchInsteadOfHangingIt() throws Exception {
+        CustomerRepository broken = mock(CustomerRepository.class);
+        when(broken.saveAll(anyList())).thenThrow(new StackOverflowError("test"));
+        GroupCommitCustomerWriter writer = new GroupCommitCustomerWriter(broken, mapper, transactionTemplate,
+                Duration.ofMillis(5), 10, Duration.ofSeconds(10));
+        writer.start();
+        try {
+            CompletionException failed = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                    assertThrows(CompletionException.class,
+                            () -> writer.save(CustomerDTO.builder().name("Error").build())));
+            assertThat(failed.getCause(), is(instanceOf(StackOverflowError.class)));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    private List<Future<CustomerDTO>> createConcurrently(List<String> names) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(names.size());
+        try {
+            List<Future<CustomerDTO>> results = names.stream()
+                    .map(name -> executor.submit(() -> {
+                        start.await();
+                        return customerService.saveNewCustomer(CustomerDTO.builder().name(name).build());
+                    }))
+                    .toList();
+            start.countDown();
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.config.QueryCountConfig;
+import guru.springframework.spring6restmvc.controller.CustomerController;
+import guru.springframework.spring6restmvc.dto.CustomerDTO;
+import guru.springframework.spring6restmvc.exception.IdempotencyKeyInUseException;
+import guru.springframework.spring6restmvc.exception.InvalidIdempotencyKeyException;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import guru.springframework.spring6restmvc.repositories.IdempotencyRecordRepository;
+import guru.springframework.spring6restmvc.services.IdempotencyService.Created;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertInsertCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertTotalCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.resetQueryCount;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(QueryCountConfig.class)
+class IdempotencyServiceImplIT {
+
+    @Autowired
+    IdempotencyService idempotencyService;
+    @Autowired
+    CustomerService customerService;
+    @Autowired
+    CustomerRepository customerRepository;
+    @Autowired
+    IdempotencyRecordRepository recordRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    // committed customers are removed again, since other tests count them
+    private final List<UUID> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        customerRepository.deleteAllById(created);
+    }
+
+    @Test
+    void retriesAreReplayedWithoutCreatingOrQuerying() {
+        String key = UUID.randomUUID().toString();
+        Created<CustomerDTO> first = remember(idempotencyService.create(CustomerController.CUSTOMER_PATH, key,
+                () -> customerService.saveNewCustomer(customer("Jack Reacher"))));
+        long customers = customerRepository.count();
+
+        resetQueryCount();
+        Created<CustomerDTO> retry = idempotencyService.create(CustomerController.CUSTOMER_PATH, key,
+                () -> customerService.saveNewCustomer(customer("Jack Reacher")));
+
+        assertTotalCount(0);
+        assertThat(first.replayed(), is(false));
+        assertThat(first.body().getName(), is(equalTo("Jack Reacher")));
+        assertThat(retry.replayed(), is(true));
+        assertThat(retry.id(), is(equalTo(first.id())));
+        assertThat(retry.location(), is(equalTo(CustomerController.CUSTOMER_PATH + "/" + first.id())));
+        assertThat(customerRepository.count(), is(equalTo(customers)));
+    }
+
+    @Test
+    void keysAreRememberedInTheTableOnceForgottenInMemory() {
+        String key = UUID.randomUUID().toString();
+        Created<CustomerDTO> first = remember(idempotencyService.create(CustomerController.CUSTOMER_PATH, key,
+                () -> customerService.saveNewCustomer(customer("Rebus"))));
+        // as another node, or this one after a restart, would see it
+        IdempotencyService restarted = new IdempotencyServiceImpl(recordRepository, transactionTemplate,
+                Duration.ofHours(1), 10, Duration.ofSeconds(10));
+
+        resetQueryCount();
+        Created<CustomerDTO> retry = restarted.create(CustomerController.CUSTOMER_PATH, key,
+                () -> customerService.saveNewCustomer(customer("Rebus")));
+
+        assertInsertCount(0);
+        assertThat(retry.replayed(), is(true));
+        assertThat(retry.id(), is(equalTo(first.id())));
+    }
+
+    @Test
+    void concurrentDuplicatesCreateOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger creations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Supplier<CustomerDTO> slowCreate = () -> {
+            creations.incrementAndGet();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return customerService.saveNewCustomer(customer("Harry Hole"));
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Created<CustomerDTO>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return idempotencyService.create(CustomerController.CUSTOMER_PATH, key, slowCreate);
+                }));
+            }
+            start.countDown();
+
+            UUID id = remember(results.get(0).get()).id();
+            int replayed = 0;
+            for (Future<Created<CustomerDTO>> result : results) {
+                assertThat(result.get().id(), is(equalTo(id)));
+                replayed += result.get().replayed() ? 1 : 0;
+            }
+            assertThat(creations.get(), is(1));
+            assertThat(replayed, is(7));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedCreationsLeaveTheKeyFree() {
+        String key = UUID.randomUUID().toString();
+        assertThrows(IllegalStateException.class, () -> idempotencyService.create(CustomerController.CUSTOMER_PATH,
+                key, () -> {
+                    throw new IllegalStateException("create failed");
+                }));
+
+        Created<CustomerDTO> retry = remember(idempotencyService.create(CustomerController.CUSTOMER_PATH, key,
+                () -> customerService.saveNewCustomer(customer("Vera Stanhope"))));
+
+        assertThat(retry.replayed(), is(false));
+        assertThat(recordRepository.existsById(CustomerController.CUSTOMER_PATH + " " + key), is(true));
+    }
+
+    @Test
+    void rejectedResourcesLeaveTheKeyFree() {
+        String key = UUID.randomUUID().toString();
+        assertThrows(DataIntegrityViolationException.class, () -> idempotencyService.create(
+                CustomerController.CUSTOMER_PATH, key, () -> customerService.saveNewCustomer(customer("x".repeat(300)))));
+
+        Created<CustomerDTO> retry = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> remember(
+                idempotencyService.create(CustomerController.CUSTOMER_PATH, key,
+                        () -> customerService.saveNewCustomer(customer("Jimmy Perez")))));
+
+        assertThat(retry.replayed(), is(false));
+        assertThat(retry.body().getName(), is(equalTo("Jimmy Perez")));
+    }
+
+    @Test
+    void requestsWaitingTooLongOnTheSameKeyAreTurnedAway() throws Exception {
+        IdempotencyService impatient = new IdempotencyServiceImpl(recordRepository, transactionTemplate,
+                Duration.ofHours(1), 10, Duration.ofMillis(100));
+        String key = UUID.randomUUID().toString();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Created<CustomerDTO>> first = executor.submit(() -> impatient.create(
+                    CustomerController.CUSTOMER_PATH, key, () -> {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return customerService.saveNewCustomer(customer("Tom Thorne"));
+                    }));
+            started.await();
+
+            assertThrows(IdempotencyKeyInUseException.class, () -> impatient.create(CustomerController.CUSTOMER_PATH,
+                    key, () -> customerService.saveNewCustomer(customer("Tom Thorne"))));
+
+            release.countDown();
+            assertThat(remember(first.get()).replayed(), is(false));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void overlongKeysAreRejected() {
+        assertThrows(InvalidIdempotencyKeyException.class, () -> idempotencyService.create(
+                CustomerController.CUSTOMER_PATH, "k".repeat(IdempotencyService.MAX_KEY_LENGTH + 1),
+                () -> customerService.saveNewCustomer(customer("Too long"))));
+    }
+
+    private CustomerDTO customer(String name) {
+        return CustomerDTO.builder().name(name).build();
+    }
+
+    private Created<CustomerDTO> remember(Created<CustomerDTO> result) {
+        created.add(result.id());
+        return result;
+    }
+}
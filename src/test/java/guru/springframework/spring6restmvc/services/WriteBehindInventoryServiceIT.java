@@ -0,0 +1,146 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.config.QueryCountConfig;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.exception.InvalidInventoryAdjustmentException;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertTotalCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.assertUpdateCount;
+import static guru.springframework.spring6restmvc.config.QueryCountConfig.resetQueryCount;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "inventory.write-behind.enabled=true",
+        // the tests flush explicitly
+        "inventory.write-behind.flush-interval=PT1H"
+})
+@ActiveProfiles("test")
+@Import(QueryCountConfig.class)
+class WriteBehindInventoryServiceIT {
+
+    @Autowired
+    InventoryService inventoryService;
+    @Autowired
+    WriteBehindInventoryService writeBehind;
+    @Autowired
+    BeerRepository repository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void unknownBeerIsNotQueued() {
+        assertThat(inventoryService.adjust(UUID.randomUUID(), 1), is(InventoryService.Outcome.NOT_FOUND));
+    }
+
+    @Test
+    void concurrentAdjustmentsAreCoalescedIntoOneUpdate() throws Exception {
+        List<Beer> beers = repository.findAll();
+        UUID popular = beers.get(0).getId();
+        UUID other = beers.get(1).getId();
+        int threads = 8;
+        int adjustmentsPerThread = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = IntStream.range(0, threads)
+                    .<Future<?>>mapToObj(thread -> executor.submit(() -> IntStream.range(0, adjustmentsPerThread)
+                            .forEach(i -> inventoryService.adjust(i % 2 == 0 ? popular : other, 1))))
+                    .toList();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        resetQueryCount();
+        writeBehind.flush();
+
+        assertUpdateCount(1);
+        assertTotalCount(1);
+        int expected = threads * adjustmentsPerThread / 2;
+        assertThat(repository.findById(popular).orElseThrow().getQuantityOnHand(), is(expected));
+        assertThat(repository.findById(other).orElseThrow().getQuantityOnHand(), is(expected));
+
+        inventoryService.adjust(popular, -expected);
+        inventoryService.adjust(other, -expected);
+        writeBehind.flush();
+    }
+
+    @Test
+    void netDeltaBelowZeroIsDropped() {
+        Beer beer = repository.findAll().get(0);
+        int quantity = beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand();
+
+        assertThat(inventoryService.adjust(beer.getId(), -(quantity + 1)), is(InventoryService.Outcome.QUEUED));
+        writeBehind.flush();
+
+        Beer unchanged = repository.findById(beer.getId()).orElseThrow();
+        assertThat(unchanged.getVersion(), is(beer.getVersion()));
+        // the rejected delta is not retried
+        resetQueryCount();
+        writeBehind.flush();
+        assertTotalCount(0);
+    }
+
+    @Test
+    void pendingDeltaOutsideTheIntRangeIsRejected() {
+        UUID beerId = repository.findAll().get(0).getId();
+        inventoryService.adjust(beerId, Integer.MAX_VALUE);
+        try {
+            assertThrows(InvalidInventoryAdjustmentException.class, () -> inventoryService.adjust(beerId, 1));
+        } finally {
+            inventoryService.adjust(beerId, -Integer.MAX_VALUE);
+        }
+        resetQueryCount();
+        writeBehind.flush();
+        assertTotalCount(0);
+    }
+
+    @Test
+    void deltaRejectedByTheDatabaseDoesNotHoldBackOtherBeers() {
+        List<Beer> beers = repository.findAll();
+        Beer full = beers.get(0);
+        Beer other = beers.get(1);
+        // set behind the repository's back so the entity's version and cache are left alone
+        jdbcTemplate.update("update beer set quantity_on_hand = ? where id = ?", Integer.MAX_VALUE, full.getId());
+        try {
+            inventoryService.adjust(full.getId(), 1);
+            inventoryService.adjust(other.getId(), 1);
+            writeBehind.flush();
+
+            assertThat(repository.findById(full.getId()).orElseThrow().getQuantityOnHand(), is(Integer.MAX_VALUE));
+            Beer adjusted = repository.findById(other.getId()).orElseThrow();
+            assertThat(adjusted.getQuantityOnHand(), is(quantityOf(other) + 1));
+            assertThat(adjusted.getVersion(), is(other.getVersion() + 1));
+            // the rejected delta is not retried
+            resetQueryCount();
+            writeBehind.flush();
+            assertTotalCount(0);
+        } finally {
+            jdbcTemplate.update("update beer set quantity_on_hand = ? where id = ?", full.getQuantityOnHand(),
+                    full.getId());
+            inventoryService.adjust(other.getId(), -1);
+            writeBehind.flush();
+        }
+    }
+
+    private static int quantityOf(Beer beer) {
+        return beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand();
+    }
+}